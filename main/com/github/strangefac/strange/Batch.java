@@ -9,9 +9,35 @@ import java.lang.annotation.Target;
  * For use on actor interface methods. Suppose an actor method is annotated, then each parameter type of the corresponding method on the actor target must be
  * the array of the actor method parameter type in the same position. Adjacent invocations of the actor method may then be batched, if they would otherwise wait
  * in the mailbox.
+ * <p>
+ * By default a batch is whatever happens to be waiting when the actor gets round to it, which under moderate load is often just one invocation. A positive
+ * {@link #lingerMillis()} makes the actor wait for more, at the cost of latency: while the batch is all that's in the mailbox and short of
+ * {@link #maxSize()}, it waits until its first invocation is that old. Any other kind of invocation posted meanwhile ends the wait.
+ * <p>
+ * With {@link #reorder()} a batch takes all pending invocations of the method, not just the adjacent ones.
+ * <p>
+ * Normally every invocation in a batch gets the same outcome. With {@link #scatter()} the target method instead returns an array or {@link java.util.List} with
+ * one element per invocation, in the same order as the argument arrays.
  */
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Batch {
-  // No members.
+  /** Must be at least 1. A batch is also limited by {@link Throughput}. */
+  int maxSize() default Integer.MAX_VALUE;
+
+  /** How long to wait for a batch to fill up, where 0 means don't wait. Otherwise the target class needs a {@link LingerDelayType}. */
+  long lingerMillis() default 0;
+
+  /**
+   * Whether it's OK to run invocations of this method ahead of other kinds of invocation posted before them, so that a batch can take them all. The mailbox
+   * keeps them in their own queue behind the first, so gathering them doesn't cost a scan. Not supported by {@link LockFreeMailbox}.
+   */
+  boolean reorder() default false;
+
+  /**
+   * Whether element i of the target method's array or {@link java.util.List} result is the outcome of invocation i. An element that is a
+   * {@link Syncable.NormalSyncable} or {@link Syncable.AbruptSyncable} stands for its value or throwable respectively, so that one invocation can fail without
+   * the others. A result of the wrong size fails them all.
+   */
+  boolean scatter() default false;
 }
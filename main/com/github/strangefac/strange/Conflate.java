@@ -0,0 +1,18 @@
+package com.github.strangefac.strange;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * For use on actor interface methods whose invocations only matter until superseded, e.g. setting the latest progress. An invocation that is still waiting in
+ * the mailbox is replaced by a new invocation of the same method, which takes over its place. The future of the replaced invocation is cancelled. Not
+ * supported by {@link LockFreeMailbox}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Conflate {
+  /** The index of the parameter that must also be equal for an invocation to be replaced, or -1 to replace regardless of args. */
+  int key() default -1;
+}
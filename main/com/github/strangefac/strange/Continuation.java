@@ -0,0 +1,7 @@
+package com.github.strangefac.strange;
+
+/** Like {@link Task} but given the done future it continues from, see {@link SFuture#thenPostTo(Actor, Continuation)}. */
+public interface Continuation<S, V, E extends Throwable> {
+  /** @param done Syncing it won't block. */
+  V run(S done) throws E, Suspension;
+}
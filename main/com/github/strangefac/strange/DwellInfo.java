@@ -4,4 +4,14 @@ public interface DwellInfo {
   long dwellNanos(long systemNanoTime);
 
   int mailboxSize();
+
+  /** @return How many of the {@link #mailboxSize()} messages are {@link JumpQueue}. */
+  default int jumpQueueCount() {
+    return 0;
+  }
+
+  /** @return How many of the {@link #mailboxSize()} messages are not {@link Patient}, i.e. would make a {@link Yield} invocation yield. */
+  default int impatientCount() {
+    return 0;
+  }
 }
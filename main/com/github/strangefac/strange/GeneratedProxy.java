@@ -0,0 +1,20 @@
+package com.github.strangefac.strange;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Proxy;
+
+/**
+ * For use on actor target classes. The actor will be an instance of a generated class that binds each method up-front, instead of a {@link Proxy} that looks
+ * up every invocation by {@link java.lang.reflect.Method}. This is for performance only, if the actor interface can't be implemented from outside its package
+ * the actor will silently be a {@link Proxy} as usual.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+public @interface GeneratedProxy {
+  // No members.
+}
@@ -0,0 +1,19 @@
+package com.github.strangefac.strange;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Required on actor target classes whose actor interface has a {@link Batch} with a positive {@link Batch#lingerMillis()}. The delay ends each linger that no
+ * post has ended sooner, and the timer is cancelled when one does.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+public @interface LingerDelayType {
+  /** @return The key for the desired {@link Delay} in the DI container, as for {@link ThreadCollectionType#value()}. */
+  Class<? extends Delay> value();
+}
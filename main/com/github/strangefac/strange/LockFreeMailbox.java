@@ -0,0 +1,19 @@
+package com.github.strangefac.strange;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * For use on actor target classes. Posting to the actor will not take a lock, so that many threads posting to the same actor do not contend with each other or
+ * with the thread executing its invocations. Ordering semantics (including {@link JumpQueue}, {@link Batch} and {@link Yield}) are the same as the default
+ * mailbox. {@link Batch#reorder()} and {@link Conflate} are not supported, and an actor interface that uses them is rejected.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+public @interface LockFreeMailbox {
+  // No members.
+}
@@ -0,0 +1,16 @@
+package com.github.strangefac.strange;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * For use on actor interface methods that return void. The invocation is enqueued without creating a future, so the caller can't sync it or find out whether
+ * it succeeded. Instead any failure is logged to the target's logger, as with {@link Syncable#andForget(org.slf4j.Logger)}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface OneWay {
+  // No members.
+}
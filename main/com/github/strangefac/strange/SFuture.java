@@ -1,7 +1,10 @@
 package com.github.strangefac.strange;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.function.Function;
+import com.github.strangefac.strange.impl.SFutureDefaults;
 
 /**
  * @param <E> A common superclass of all checked throwables that can be put into this future, or anything you like (e.g.
@@ -15,4 +18,47 @@ public interface SFuture<V, E extends Throwable> extends OpenFuture<V, E>, Futur
    * @throws IllegalStateException If this is not yet done.
    */
   V assertDoneAndGetUninterruptibly() throws IllegalStateException, ExecutionException;
+
+  /**
+   * For non-actor code. The returned future is completed by whichever thread completes this, or immediately if this is already done. The cause of an
+   * {@link java.lang.reflect.InvocationTargetException} is unwrapped as {@link #sync()} would. Cancelling the returned future has no effect on this.
+   * <p>
+   * For a foreign impl the default waits for this on a thread of the common pool, which {@link com.github.strangefac.strange.impl.SFutureImpl} doesn't need to
+   * do. The pool adds a spare thread meanwhile, but that still costs a thread per pending future.
+   */
+  default CompletableFuture<V> toCompletableFuture() {
+    return SFutureDefaults.toCompletableFuture(this);
+  }
+
+  /**
+   * The given function is applied to the value by whichever thread completes this, so it should be quick and thread-safe. If this doesn't complete normally
+   * the returned future gets the same outcome, and if the function throws the returned future gets that instead.
+   */
+  default <W> SFuture<W, E> map(Function<? super V, ? extends W> function) {
+    return SFutureDefaults.map(this, function);
+  }
+
+  /** Like {@link #map(Function)} but the returned future gets the outcome of the future returned by the function, once that is done. */
+  default <W> SFuture<W, E> flatMap(Function<? super V, ? extends SFuture<? extends W, ? extends E>> function) {
+    return SFutureDefaults.flatMap(this, function);
+  }
+
+  /**
+   * When this is done post the given continuation to the given actor, as a suspension would, so that a pipeline across actors needs no blocked thread.
+   * 
+   * @param actor Must have been spawned by strange.
+   * @return The future of the continuation.
+   */
+  default <W, F extends Throwable> SFuture<W, F> thenPostTo(Actor actor, Continuation<? super SFuture<V, E>, ? extends W, ? extends F> continuation) {
+    return SFutureDefaults.thenPostTo(this, actor, continuation);
+  }
+
+  /**
+   * For a deadline that doesn't need a waiting thread. The returned future gets the outcome of this, or a {@link java.util.concurrent.TimeoutException} as the
+   * cause of its {@link ExecutionException} (so that {@link #sync()} throws {@link SyncException}) if this isn't done in time. The delay is cancelled as soon
+   * as this is done, so a {@link com.github.strangefac.strange.appl.TimerWheelDelay} is a good choice when deadlines are normally met.
+   */
+  default SFuture<V, E> orTimeout(Delay delay, double seconds) {
+    return SFutureDefaults.orTimeout(this, delay, seconds);
+  }
 }
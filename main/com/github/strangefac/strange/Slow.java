@@ -5,7 +5,10 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
-/** The annotated actor interface method will contribute to the dwell time only while on the queue, not when actually running. */
+/**
+ * The annotated actor interface method will contribute to the dwell time only while on the queue, not when actually running. If the target class has
+ * {@link SlowThreadCollectionType} the method will also run on that thread collection.
+ */
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Slow {
@@ -0,0 +1,20 @@
+package com.github.strangefac.strange;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * For use on actor target classes alongside {@link ThreadCollectionType}. Invocations of {@link Slow} methods run on this thread collection instead, so that
+ * they don't occupy the threads that other invocations need, e.g. a core-sized pool for ordinary invocations and an elastic pool for slow ones. The actor still
+ * runs at most one invocation at a time.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+public @interface SlowThreadCollectionType {
+  /** @return The key for the desired {@link ThreadCollection} in the DI container, as for {@link ThreadCollectionType#value()}. */
+  Class<? extends ThreadCollection> value();
+}
@@ -0,0 +1,20 @@
+package com.github.strangefac.strange;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * For use on actor target classes. The actor gives its thread back to its {@link ThreadCollection} after processing this many invocations, and is then
+ * rescheduled if its mailbox isn't empty. A low value is fairer to other actors sharing the threads, a high value has less scheduling overhead. Without this
+ * annotation the actor keeps its thread until its mailbox is empty.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+public @interface Throughput {
+  /** Must be at least 1. A {@link Batch} counts as the number of invocations in it. */
+  int value();
+}
@@ -8,7 +8,7 @@ import com.github.strangefac.strange.VoidTask;
 import com.github.strangefac.strange.VoidTask8;
 
 abstract class AbstractDelay implements Delay {
-  private static <E extends Throwable> void runTask8(VoidTask8<E> task) throws E, Suspension {
+  static <E extends Throwable> void runTask8(VoidTask8<E> task) throws E, Suspension {
     task.run(task);
   }
 
@@ -1,11 +1,12 @@
 package com.github.strangefac.strange.appl;
 
+import static com.github.strangefac.strange.util.Standard.also;
 import static com.github.strangefac.strange.util.Standard.let;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.slf4j.Logger;
@@ -68,7 +69,9 @@ public class DelayImpl extends AbstractDelay implements Disposable {
     }
   }
 
-  private final ScheduledExecutorService _executor = let(getClass().getSimpleName(), threadName -> Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, threadName)));
+  private final ScheduledExecutorService _executor = let(getClass().getSimpleName(), threadName -> also(new ScheduledThreadPoolExecutor(1, r -> new Thread(r, threadName)), it -> {
+    it.setRemoveOnCancelPolicy(true); // Otherwise a cancelled task stays on the heap until its delay expires, see TimerWheelDelay for lots of those.
+  }));
 
   public TaskControl after(double seconds, VoidCallable<?> runnable) {
     return after(seconds, runnable, VoidCallable.PASS);
@@ -92,6 +95,11 @@ public class DelayImpl extends AbstractDelay implements Disposable {
     }, Math.round(seconds * 1e9), TimeUnit.NANOSECONDS));
   }
 
+  // For testing.
+  int queueSize() {
+    return ((ScheduledThreadPoolExecutor) _executor).getQueue().size();
+  }
+
   public void dispose() throws InterruptedException {
     // We use shutdownNow instead of shutdown so that existing (and possibly large) delays are cancelled.
     // A task-in-progress will probably complete, as there are no interruptible waits when queueing actor invocations.
@@ -0,0 +1,401 @@
+package com.github.strangefac.strange.appl;
+
+import static com.github.strangefac.strange.Syncable.AbruptSyncable.andForgetImpl;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.github.strangefac.strange.Actor;
+import com.github.strangefac.strange.VoidTask;
+import com.github.strangefac.strange.VoidTask8;
+import com.github.strangefac.strange.function.VoidCallable;
+import com.github.strangefac.strange.util.Disposable;
+import com.github.strangefac.strange.util.TypedArrayList;
+import gnu.trove.map.hash.THashMap;
+
+/**
+ * A hashed timer wheel, for when there are lots of delays and most of them are cancelled e.g. per-request deadlines. Scheduling is a push and cancelling is a
+ * CAS and a push, both O(1), and a cancelled delay is unlinked (also O(1)) at the next tick so that it doesn't occupy the heap until its deadline. A single
+ * thread ticks at a fixed rate, moving new delays into their buckets and running the due ones of the current bucket as a batch. So a delay fires up to one tick
+ * late, but never early. While there are no delays the thread doesn't tick at all.
+ * <p>
+ * With a slack of more than one tick, deadlines are rounded up to a multiple of the slack and the thread only wakes up on those ticks, so delays within the same
+ * slack window fire together and up to one slack late. In that mode the due tasks of each actor are also delivered as one post, running in the order they were
+ * added, so such tasks should not suspend: a {@link com.github.strangefac.strange.Suspension} is logged like any other failure.
+ */
+public class TimerWheelDelay extends AbstractDelay implements Disposable {
+  private static final Logger LOG = LoggerFactory.getLogger(TimerWheelDelay.class);
+  private static final int PENDING = 0, CANCELLED = 1, RUNNING = 2, DONE = 3;
+
+  private static final AtomicIntegerFieldUpdater<Timeout> TIMEOUT_STATE = AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "_state");
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<TimerWheelDelay, Timeout> ADDED = AtomicReferenceFieldUpdater.newUpdater(TimerWheelDelay.class, Timeout.class, "_addedOrNull"), CANCELLED_STACK = AtomicReferenceFieldUpdater.newUpdater(TimerWheelDelay.class, Timeout.class, "_cancelledOrNull");
+
+  /** Compact: no separate latch, flag or queue node, it links itself into the added and cancelled stacks. */
+  class Timeout implements TaskControl {
+    private final VoidCallable<?> _runnableOrNull;
+    /** In nanos since {@link TimerWheelDelay#_startNanos} until transferred to the wheel, then in ticks. */
+    private long _deadline;
+    volatile int _state; // Not private so that the updater can access it.
+    /** Set before waiting for {@link #DONE}, so that the worker only bothers to notify if necessary. */
+    private volatile boolean _waiting;
+    /** Link in the cancelled stack. */
+    private Timeout _nextCancelled;
+    // Only accessed by the worker, except _next which is also the link in the added stack:
+    private int _bucketIndex = -1;
+    private Timeout _prev, _next;
+
+    private Timeout(VoidCallable<?> runnableOrNull, long deadlineNanos) {
+      _runnableOrNull = runnableOrNull;
+      _deadline = deadlineNanos;
+    }
+
+    public boolean cancelOrAllow() {
+      if (!TIMEOUT_STATE.compareAndSet(this, PENDING, CANCELLED)) return false;
+      push(CANCELLED_STACK, this, true); // So that the worker unlinks it at the next tick rather than when its bucket comes round.
+      return true;
+    }
+
+    /** @throws CancellationException If cancelled, as there is nothing to wait for. */
+    public void waitFor() throws InterruptedException {
+      if (DONE == _state) return;
+      synchronized (this) {
+        _waiting = true; // Before checking the state, which the worker sets before checking this.
+        while (true) {
+          int state = _state;
+          if (DONE == state) break;
+          if (CANCELLED == state) throw new CancellationException();
+          wait();
+        }
+      }
+    }
+
+    /** @return false if cancelled. */
+    boolean start() {
+      return TIMEOUT_STATE.compareAndSet(this, PENDING, RUNNING);
+    }
+
+    void call() throws Throwable {
+      _runnableOrNull.call();
+    }
+
+    /** Called by the worker. */
+    void run() {
+      if (!start()) return;
+      try {
+        call();
+      } catch (Throwable t) {
+        LOG.error("Delayed runnable failed:", t);
+      }
+      finish();
+    }
+
+    void finish() {
+      _state = DONE;
+      if (_waiting) {
+        synchronized (this) {
+          notifyAll();
+        }
+      }
+    }
+
+    // For testing.
+    boolean isDone() {
+      return DONE == _state;
+    }
+
+    // For testing, once done.
+    long deadlineTick() {
+      return _deadline;
+    }
+  }
+
+  /** Remembers its actor so that it can share a post with the other due tasks of that actor. */
+  private class ActorTimeout extends Timeout {
+    private final Actor _actor;
+    private final VoidTask<?> _task;
+    private final Logger _log;
+
+    private ActorTimeout(Actor actor, VoidTask<?> task, Logger log, long deadlineNanos) {
+      super(null, deadlineNanos);
+      _actor = actor;
+      _task = task;
+      _log = log;
+    }
+
+    void call() {
+      _actor.post(_task).andForget(_log);
+    }
+
+    /** Called by the actor, as part of a batch. */
+    private void runTask() {
+      try {
+        _task.run();
+      } catch (Throwable t) {
+        andForgetImpl(_log, t);
+      }
+    }
+  }
+
+  /** A doubly-linked list of timeouts, only accessed by the worker. */
+  private static class Bucket {
+    private Timeout _headOrNull;
+
+    private void add(Timeout timeout, int index) {
+      timeout._next = _headOrNull;
+      if (null != _headOrNull) _headOrNull._prev = timeout;
+      _headOrNull = timeout;
+      timeout._bucketIndex = index;
+    }
+
+    private void remove(Timeout timeout) {
+      if (null == timeout._prev) {
+        _headOrNull = timeout._next;
+      } else {
+        timeout._prev._next = timeout._next;
+      }
+      if (null != timeout._next) timeout._next._prev = timeout._prev;
+      timeout._prev = timeout._next = null;
+      timeout._bucketIndex = -1;
+    }
+  }
+
+  private final long _tickNanos;
+  /** Ticks per wakeup, where more than one means coalescing. */
+  private final int _slackTicks;
+  private final Bucket[] _wheel;
+  private final int _mask;
+  /** Treiber stacks, linked via {@link Timeout#_next} and {@link Timeout#_nextCancelled} respectively. */
+  private volatile Timeout _addedOrNull, _cancelledOrNull;
+  private final TypedArrayList<Timeout> _due = new TypedArrayList<>(Timeout.class);
+  private final THashMap<Actor, TypedArrayList<ActorTimeout>> _batches = new THashMap<>();
+  private final long _startNanos = System.nanoTime();
+  private final Thread _worker;
+  private volatile boolean _disposed;
+  /** Set by the worker before it parks without a deadline, so that {@link #add(Timeout)} knows to wake it. */
+  private volatile boolean _idle;
+  /** Only accessed by the worker, always a multiple of {@link #_slackTicks}. */
+  private long _tick;
+  /** Only accessed by the worker, the number of timeouts in the wheel. */
+  private int _wheelCount;
+
+  /**
+   * @param tickMillis The resolution e.g. 10, where smaller is more accurate but wakes up more often.
+   * @param wheelSize Rounded up to a power of 2, the number of ticks before a bucket is revisited.
+   * @param slackMillis Rounded down to a multiple of the tick, how late a delay may fire so that it can fire with its neighbours. At most one tick means no
+   * coalescing.
+   */
+  public TimerWheelDelay(long tickMillis, int wheelSize, long slackMillis) {
+    if (tickMillis < 1) throw new IllegalArgumentException("The tick must be at least 1 millisecond.");
+    if (wheelSize < 1 || wheelSize > 1 << 30) throw new IllegalArgumentException("Unsupported wheel size: " + wheelSize);
+    if (slackMillis < 0 || slackMillis / tickMillis > 1 << 30) throw new IllegalArgumentException("Unsupported slack: " + slackMillis);
+    _tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+    _slackTicks = (int) Math.max(1, slackMillis / tickMillis);
+    int size = 1;
+    while (size < wheelSize)
+      size <<= 1;
+    _wheel = new Bucket[size];
+    for (int i = 0; i < _wheel.length; ++i)
+      _wheel[i] = new Bucket();
+    _mask = _wheel.length - 1;
+    _worker = new Thread(this::work, getClass().getSimpleName());
+    _worker.setDaemon(true);
+    _worker.start();
+  }
+
+  public TimerWheelDelay(long tickMillis, int wheelSize) {
+    this(tickMillis, wheelSize, 0);
+  }
+
+  /** 10 millisecond ticks with a wheel of a bit over 5 seconds. */
+  public TimerWheelDelay() {
+    this(10, 512);
+  }
+
+  /** Saturates rather than overflowing, so that a huge or infinite delay never fires. */
+  private long deadlineNanos(double seconds) {
+    long nowNanos = System.nanoTime() - _startNanos;
+    return nowNanos + Math.min(Math.max(0, Math.round(seconds * 1e9)), Long.MAX_VALUE - nowNanos);
+  }
+
+  private TaskControl add(Timeout timeout) {
+    if (_disposed) throw new RejectedExecutionException("Disposed.");
+    if (push(ADDED, timeout, false) && _idle) LockSupport.unpark(_worker); // Otherwise it's ticking, or a previous add woke it.
+    return timeout;
+  }
+
+  public TaskControl after(double seconds, VoidCallable<?> runnable) {
+    return add(new Timeout(runnable, deadlineNanos(seconds)));
+  }
+
+  public TaskControl after(double seconds, Actor actor, VoidTask<?> task, Logger log) {
+    return add(new ActorTimeout(actor, task, log, deadlineNanos(seconds)));
+  }
+
+  public TaskControl after(double seconds, Actor actor, VoidTask8<?> task, Logger log) {
+    return add(new ActorTimeout(actor, () -> runTask8(task), log, deadlineNanos(seconds)));
+  }
+
+  /** @return Whether the stack was empty. */
+  private boolean push(@SuppressWarnings("rawtypes") AtomicReferenceFieldUpdater<TimerWheelDelay, Timeout> stack, Timeout timeout, boolean cancelled) {
+    while (true) {
+      Timeout head = stack.get(this);
+      if (cancelled) {
+        timeout._nextCancelled = head;
+      } else {
+        timeout._next = head;
+      }
+      if (stack.compareAndSet(this, head, timeout)) return null == head;
+    }
+  }
+
+  private void work() {
+    while (!_disposed) {
+      if (0 == _wheelCount) idle();
+      long tickEndNanos = _startNanos + (_tick + 1) * _tickNanos, sleepNanos; // The ticks in between are empty, so no need to wake up for them.
+      while ((sleepNanos = tickEndNanos - System.nanoTime()) > 0 && !_disposed)
+        LockSupport.parkNanos(this, sleepNanos);
+      if (_disposed) break;
+      transferAdded();
+      removeCancelled();
+      expire(_wheel[(int) (_tick & _mask)]);
+      _tick += _slackTicks;
+    }
+  }
+
+  /** Parks until something is added, then skips the ticks that passed, as there was nothing to do in them. */
+  private void idle() {
+    _idle = true; // Before checking the added stack, which add pushes to before checking this.
+    while (null == _addedOrNull && !_disposed)
+      LockSupport.park(this);
+    _idle = false;
+    long ticks = (System.nanoTime() - _startNanos) / _tickNanos;
+    _tick = Math.max(_tick, ticks / _slackTicks * _slackTicks);
+  }
+
+  private void transferAdded() {
+    Timeout reversed = null;
+    for (Timeout timeout = ADDED.getAndSet(this, null), next; null != timeout; timeout = next) {
+      next = timeout._next;
+      timeout._next = reversed;
+      reversed = timeout;
+    }
+    for (Timeout timeout = reversed, next; null != timeout; timeout = next) { // In the order they were added.
+      next = timeout._next;
+      timeout._next = null;
+      if (CANCELLED == timeout._state) continue; // Never mind.
+      long ticks = timeout._deadline / _tickNanos;
+      ticks = Math.max(_tick, (ticks + _slackTicks - 1) / _slackTicks * _slackTicks); // Due now if it's already late.
+      timeout._deadline = ticks;
+      int index = (int) (ticks & _mask);
+      _wheel[index].add(timeout, index);
+      ++_wheelCount;
+    }
+  }
+
+  private void removeCancelled() {
+    for (Timeout timeout = CANCELLED_STACK.getAndSet(this, null), next; null != timeout; timeout = next) {
+      next = timeout._nextCancelled;
+      timeout._nextCancelled = null;
+      if (timeout._bucketIndex >= 0) { // Otherwise it was never transferred.
+        _wheel[timeout._bucketIndex].remove(timeout); // O(1).
+        --_wheelCount;
+      }
+    }
+  }
+
+  private void expire(Bucket bucket) {
+    for (Timeout timeout = bucket._headOrNull, next; null != timeout; timeout = next) {
+      next = timeout._next;
+      if (CANCELLED == timeout._state) {
+        bucket.remove(timeout);
+        --_wheelCount;
+      } else if (timeout._deadline <= _tick) {
+        bucket.remove(timeout);
+        --_wheelCount;
+        _due.add(timeout);
+      } // Otherwise due in a later round.
+    }
+    int n = _due.size();
+    if (_slackTicks > 1) {
+      for (int i = 0; i < n; ++i) {
+        Timeout timeout = _due.get(i);
+        if (timeout instanceof ActorTimeout) {
+          ActorTimeout actorTimeout = (ActorTimeout) timeout;
+          TypedArrayList<ActorTimeout> batch = _batches.get(actorTimeout._actor);
+          if (null == batch) _batches.put(actorTimeout._actor, batch = new TypedArrayList<>(ActorTimeout.class));
+          batch.add(actorTimeout); // Reverse order.
+        }
+      }
+    }
+    for (int i = n - 1; i >= 0; --i) { // The bucket is LIFO, so this runs them in the order they were added.
+      Timeout timeout = _due.get(i);
+      if (_batches.isEmpty() || !(timeout instanceof ActorTimeout)) {
+        timeout.run();
+      } else {
+        TypedArrayList<ActorTimeout> batch = _batches.remove(((ActorTimeout) timeout)._actor);
+        if (null != batch) post(batch); // At the position of its first task, otherwise already posted.
+      }
+    }
+    _due.clear();
+  }
+
+  private static void post(TypedArrayList<ActorTimeout> batch) {
+    if (1 == batch.size()) {
+      batch.get(0).run();
+      return;
+    }
+    TypedArrayList<ActorTimeout> started = new TypedArrayList<>(ActorTimeout.class);
+    for (int i = batch.size() - 1; i >= 0; --i) {
+      ActorTimeout timeout = batch.get(i);
+      if (timeout.start()) started.add(timeout);
+    }
+    if (started.isEmpty()) return;
+    try {
+      started.get(0)._actor.post(() -> {
+        for (ActorTimeout timeout : started)
+          timeout.runTask();
+        return null;
+      }).andForget(LOG);
+    } catch (Throwable t) {
+      LOG.error("Delayed post failed:", t);
+    }
+    for (ActorTimeout timeout : started)
+      timeout.finish();
+  }
+
+  public void dispose() throws InterruptedException {
+    _disposed = true;
+    LockSupport.unpark(_worker);
+    _worker.join();
+    int pending = 0;
+    for (Bucket bucket : _wheel) {
+      for (Timeout timeout = bucket._headOrNull; null != timeout; timeout = timeout._next) {
+        if (PENDING == timeout._state) ++pending;
+      }
+    }
+    for (Timeout timeout = _addedOrNull; null != timeout; timeout = timeout._next) {
+      if (PENDING == timeout._state) ++pending;
+    }
+    LOG.debug("{} task(s) never started.", pending);
+  }
+
+  // For testing.
+  Thread.State workerState() {
+    return _worker.getState();
+  }
+
+  // For testing, after dispose.
+  int wheelCount() {
+    int count = 0;
+    for (Bucket bucket : _wheel) {
+      for (Timeout timeout = bucket._headOrNull; null != timeout; timeout = timeout._next)
+        ++count;
+    }
+    return count;
+  }
+}
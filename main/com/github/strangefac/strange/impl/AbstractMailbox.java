@@ -0,0 +1,147 @@
+package com.github.strangefac.strange.impl;
+
+import static com.github.strangefac.strange.impl.Invocation.PRIVATE_POST_TASK_SIGNATURE_KEY;
+import static com.github.strangefac.strange.impl.OneWayWrapper.ONE_WAY_WRAPPER;
+import java.util.List;
+import org.slf4j.Logger;
+import com.github.strangefac.strange.DeadActorException;
+import com.github.strangefac.strange.DwellInfo;
+import com.github.strangefac.strange.OneWay;
+import com.github.strangefac.strange.PrivateActor;
+import com.github.strangefac.strange.SFuture;
+import com.github.strangefac.strange.Wrapper;
+import com.github.strangefac.strange.impl.StrangeImpl.TargetClass;
+import com.github.strangefac.strange.util.UncheckedCast;
+
+/** Behaviour common to all mailbox impls, which differ only in how they are made thread-safe. */
+abstract class AbstractMailbox {
+  private static class DwellInfoImpl implements DwellInfo {
+    private final long _invocationNanoTime;
+    private final int _mailboxSize, _jumpQueueCount, _impatientCount;
+
+    private DwellInfoImpl(long invocationNanoTime, int mailboxSize, int jumpQueueCount, int impatientCount) {
+      _invocationNanoTime = invocationNanoTime;
+      _mailboxSize = mailboxSize;
+      _jumpQueueCount = jumpQueueCount;
+      _impatientCount = impatientCount;
+    }
+
+    public long dwellNanos(long systemNanoTime) {
+      return systemNanoTime - _invocationNanoTime;
+    }
+
+    public int mailboxSize() {
+      return _mailboxSize;
+    }
+
+    public int jumpQueueCount() {
+      return _jumpQueueCount;
+    }
+
+    public int impatientCount() {
+      return _impatientCount;
+    }
+  }
+
+  /** Nothing is being executed and the mailbox is empty. */
+  static final DwellInfo TRIVIAL_DWELL_INFO = new DwellInfo() {
+    public long dwellNanos(long systemNanoTime) {
+      return 0;
+    }
+
+    public int mailboxSize() {
+      return 0;
+    }
+  };
+
+  static DwellInfo dwellInfo(long invocationNanoTime, int mailboxSize, int jumpQueueCount, int impatientCount) {
+    return new DwellInfoImpl(invocationNanoTime, mailboxSize, jumpQueueCount, impatientCount);
+  }
+
+  private final boolean _afterTaskEnabled;
+
+  AbstractMailbox(boolean afterTaskEnabled) {
+    _afterTaskEnabled = afterTaskEnabled;
+  }
+
+  /** Discards all pending invocations and interrupts the loaded one, if any. Idempotent. */
+  abstract void kill(Logger log);
+
+  /** @return The wrapper, or null if this is {@link PrivateActor#post(com.github.strangefac.strange.Task, Wrapper)} or {@link OneWay}. */
+  abstract <V, E extends Throwable> SFuture<V, E> add(PrivateActor actor, SignatureInfo signatureInfo, Object... args) throws DeadActorException;
+
+  /**
+   * @param maxBatchSize Must be at least 1.
+   * @return The next invocation, or null if the mailbox is empty.
+   */
+  abstract InvocationLite load(Logger log, TargetClass<?> targetClass, Object target, int maxBatchSize) throws DeadActorException, IllegalStateException;
+
+  abstract void unload() throws IllegalStateException;
+
+  /**
+   * Like {@link #load(Logger, TargetClass, Object, int)} this is for the drain, which also uses it to recheck once it has let go of the actor.
+   * 
+   * @return The first invocation if it's a {@link com.github.strangefac.strange.Batch} that would like to linger, as it and the rest of the mailbox make up a
+   * batch that's short of its max size. Its linger may already be over, see {@link #lingerNanos(InvocationInfo)}.
+   */
+  abstract InvocationInfo<?, ?> lingeringOrNull();
+
+  /** @return Whether the given info is worth checking for {@link #lingeringOrNull()}. */
+  static boolean lingers(InvocationInfo<?, ?> infoOrNull) {
+    return null != infoOrNull && infoOrNull.signatureInfo().batch() && 0 != infoOrNull.signatureInfo().batchLingerNanos();
+  }
+
+  /** @return How much longer the batch of the given {@link #lingeringOrNull()} should wait, or 0 if it has waited long enough. */
+  static long lingerNanos(InvocationInfo<?, ?> info) {
+    return Math.max(0, info.nanoTime() + info.signatureInfo().batchLingerNanos() - System.nanoTime());
+  }
+
+  abstract int size() throws IllegalStateException;
+
+  /** @return Whether there is nothing to load, which is permanently the case once killed. */
+  abstract boolean isEmpty();
+
+  abstract DwellInfo getDwellInfo();
+
+  /**
+   * Mailboxes that can recycle envelopes override this and {@link #spareInvocationOrNull()}, and are responsible for only handing out envelopes that nothing
+   * else refers to. Called by {@link #add(PrivateActor, SignatureInfo, Object...)} and {@link #load(Logger, TargetClass, Object, int)} respectively.
+   *
+   * @return A cleared info, or null to create one.
+   */
+  InvocationInfo<?, ?> spareInfoOrNull() {
+    return null;
+  }
+
+  /** @return A cleared invocation, or null to create one. */
+  Invocation<?, ?> spareInvocationOrNull() {
+    return null;
+  }
+
+  /**
+   * @return The info to enqueue, with a new {@link WrapperImpl} unless this is {@link PrivateActor#post(com.github.strangefac.strange.Task, Wrapper)} or
+   * {@link OneWay}.
+   */
+  <V, E extends Throwable> InvocationInfo<V, E> newInvocationInfo(PrivateActor actor, SignatureInfo signatureInfo, Object... args) {
+    Wrapper<V, E> wrapper;
+    if (signatureInfo.oneWay()) {
+      wrapper = UncheckedCast.uncheckedCast(ONE_WAY_WRAPPER);
+    } else if (PRIVATE_POST_TASK_SIGNATURE_KEY.equals(signatureInfo.key())) {
+      wrapper = UncheckedCast.uncheckedCast(args[1]);
+    } else {
+      wrapper = new WrapperImpl<>();
+    }
+    InvocationInfo<?, ?> spareOrNull = spareInfoOrNull();
+    return null == spareOrNull ? new InvocationInfo<>(wrapper, actor, signatureInfo, args) : spareOrNull.reuse(wrapper, actor, signatureInfo, args);
+  }
+
+  /** @return The future for the caller of {@link #add(PrivateActor, SignatureInfo, Object...)}. */
+  static <V, E extends Throwable> SFuture<V, E> futureOrNull(InvocationInfo<V, E> info) {
+    return info.signatureInfo().oneWay() || PRIVATE_POST_TASK_SIGNATURE_KEY.equals(info.signatureInfo().key()) ? null : (WrapperImpl<V, E>) info.wrapper();
+  }
+
+  /** @param yield Whether info is a {@link com.github.strangefac.strange.Yield} invocation that should yield to an impatient invocation in the mailbox. */
+  InvocationLite toInvocationLite(InvocationInfo<?, ?> info, List<InvocationInfo<?, ?>> batchTail, boolean yield, Logger log, TargetClass<?> targetClass, Object target) {
+    return yield ? info.toYieldInvocation(batchTail, log) : info.toInvocation(batchTail, log, targetClass, target, _afterTaskEnabled, spareInvocationOrNull());
+  }
+}
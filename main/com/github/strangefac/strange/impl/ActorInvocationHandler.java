@@ -1,14 +1,18 @@
 package com.github.strangefac.strange.impl;
 
-import static com.github.strangefac.strange.IncrOrFalse.NULL_DRAIN;
 import static com.github.strangefac.strange.impl.Invocation.PRIVATE_POST_TASK_SIGNATURE_KEY;
 import static com.github.strangefac.strange.impl.Mailbox.DEAD_ACTOR_MESSAGE;
 import static com.github.strangefac.strange.impl.SignatureLookup.SIGNATURE_INFOS;
 import static com.github.strangefac.strange.util.Standard.also;
+import static com.github.strangefac.strange.util.Standard.run;
 import static com.github.strangefac.strange.util.StrangeUtils.notNull;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
@@ -19,17 +23,19 @@ import com.github.strangefac.strange.Actor;
 import com.github.strangefac.strange.ActorTargetThrows;
 import com.github.strangefac.strange.AfterTask;
 import com.github.strangefac.strange.DeadActorException;
-import com.github.strangefac.strange.IncrOrFalse;
+import com.github.strangefac.strange.Delay;
 import com.github.strangefac.strange.PrivateActor;
 import com.github.strangefac.strange.SFuture;
 import com.github.strangefac.strange.Syncable;
 import com.github.strangefac.strange.ThreadCollection;
+import com.github.strangefac.strange.impl.GeneratedActorFactory.BoundMethod;
+import com.github.strangefac.strange.impl.GeneratedActorFactory.Handler;
 import com.github.strangefac.strange.impl.SignatureInfo.SignatureKey;
 import com.github.strangefac.strange.impl.StrangeImpl.TargetClass;
 import gnu.trove.map.hash.THashMap;
 import gnu.trove.set.hash.THashSet;
 
-class ActorInvocationHandler<A extends Actor, E extends Throwable> implements InvocationHandler {
+class ActorInvocationHandler<A extends Actor, E extends Throwable> implements InvocationHandler, Handler {
   private interface FastInvoke {
     Object invoke(ActorInvocationHandler<?, ?> handler, Object proxy, Object[] args);
   }
@@ -40,11 +46,38 @@ class ActorInvocationHandler<A extends Actor, E extends Throwable> implements In
     BadActorMethodException(boolean legacy, Class<?> declaringClass, SignatureInfo signatureInfo) {
       super(String.format("Method is %s elsewhere but %s here: %s#%s", legacy ? "non-legacy" : "legacy", legacy ? "legacy" : "non-legacy", declaringClass.getName(), signatureInfo));
     }
+
+    BadActorMethodException(SignatureInfo signatureInfo, Throwable cause) {
+      super(String.format("Failed to create property accessor: %s", signatureInfo), cause);
+    }
+  }
+
+  /** Everything {@link ActorInvocationHandler#invoke(Object, Method, Object[])} needs to know about a method, so that it only has to look up this. */
+  private static class Dispatch {
+    private final SignatureInfo _signatureInfo;
+    private final FastInvoke _fastInvokeOrNull;
+    private final Supplier<?> _propertyAccessorOrNull;
+    private final boolean _legacy;
+
+    private Dispatch(SignatureInfo signatureInfo, FastInvoke fastInvokeOrNull, Supplier<?> propertyAccessorOrNull, boolean legacy) {
+      _signatureInfo = signatureInfo;
+      _fastInvokeOrNull = fastInvokeOrNull;
+      _propertyAccessorOrNull = propertyAccessorOrNull;
+      _legacy = legacy;
+    }
   }
 
   private static final String LEGACY_SIGNATURES_FORMAT = "{} legacy signatures: {}";
   private static final Object[] EMPTY_OBJECT_ARRAY = new Object[0];
   static final SignatureInfo INIT_SIGNATURE_INFO = new SignatureInfo("init", Actor.class);
+  /** The methods of {@link Object} that {@link Proxy} passes to its handler. */
+  static final List<Method> OBJECT_METHODS = run(() -> {
+    try {
+      return Arrays.asList(Object.class.getMethod("hashCode"), Object.class.getMethod("equals", Object.class), Object.class.getMethod("toString"));
+    } catch (NoSuchMethodException e) {
+      throw new RuntimeException(e);
+    }
+  });
 
   private static void allDeclaredMethods(Class<?> someInterface, Consumer<? super Method> consumer) {
     for (Method method : someInterface.getDeclaredMethods()) // Not ordered.
@@ -67,20 +100,24 @@ class ActorInvocationHandler<A extends Actor, E extends Throwable> implements In
       return null;
     });
   });
-  private final Mailbox _mailbox;
+  private final AbstractMailbox _mailbox;
   private final Set<SignatureKey> _legacySignatureKeys;
+  private final THashMap<Method, Dispatch> _dispatches; // Read-only once constructed.
+  private final Dispatch[] _boundDispatchesOrNull; // Indexed by BoundMethod, so that generated actors don't hash at all.
   private final Logger _log;
   private final TargetClass<A> _targetClass;
   private final ActorTargetThrows<A, ? extends E> _target;
-  private final ThreadCollection _threadCollection;
+  private final Drain _drain;
 
   /**
    * @param target The underlying object.
    * @param threadCollection The collection of threads that are acceptable for invoking methods on the target. Most actors will simply share a thread pool,
    * swing actors must all use the {@link SwingThreadCollection}.
+   * @param slowThreadCollectionOrNull For {@link com.github.strangefac.strange.Slow} methods, or null to use threadCollection.
+   * @param lingerDelayOrNull See {@link com.github.strangefac.strange.LingerDelayType}, only null if no batch lingers.
    */
-  ActorInvocationHandler(Logger log, TargetClass<A> targetClass, ActorTargetThrows<A, ? extends E> target, ThreadCollection threadCollection) {
-    _mailbox = new Mailbox(target instanceof AfterTask);
+  ActorInvocationHandler(Logger log, TargetClass<A> targetClass, ActorTargetThrows<A, ? extends E> target, ThreadCollection threadCollection, ThreadCollection slowThreadCollectionOrNull, Delay lingerDelayOrNull) {
+    _mailbox = targetClass.newMailbox(target instanceof AfterTask);
     _legacySignatureKeys = getLegacySignatureKeys(log, targetClass.actorInterface());
     if (!_legacySignatureKeys.isEmpty()) {
       // Observe non-deterministic order, but good enough for debug logging:
@@ -89,7 +126,40 @@ class ActorInvocationHandler<A extends Actor, E extends Throwable> implements In
     _log = log;
     _targetClass = targetClass;
     _target = target;
-    _threadCollection = notNull("threadCollection", threadCollection);
+    _drain = new Drain(_mailbox, log, targetClass, target, notNull("threadCollection", threadCollection), slowThreadCollectionOrNull, lingerDelayOrNull, targetClass.throughput());
+    _dispatches = also(new THashMap<>(), it -> {
+      Consumer<Method> put = method -> {
+        if (!Modifier.isStatic(method.getModifiers())) it.put(method, newDispatch(SIGNATURE_INFOS.getOrCreate(method)));
+      };
+      for (Method method : OBJECT_METHODS)
+        put.accept(method);
+      allDeclaredMethods(PrivateActor.class, put);
+      allDeclaredMethods(targetClass.actorInterface(), put);
+    });
+    GeneratedActorFactory<A> generatedActorFactoryOrNull = targetClass.generatedActorFactoryOrNull();
+    if (null == generatedActorFactoryOrNull) {
+      _boundDispatchesOrNull = null;
+    } else {
+      BoundMethod[] boundMethods = generatedActorFactoryOrNull.boundMethods();
+      _boundDispatchesOrNull = new Dispatch[boundMethods.length];
+      for (BoundMethod boundMethod : boundMethods)
+        _boundDispatchesOrNull[boundMethod.index()] = dispatch(boundMethod.method());
+    }
+  }
+
+  private Dispatch newDispatch(SignatureInfo signatureInfo) throws BadActorMethodException {
+    Supplier<?> propertyAccessorOrNull;
+    try {
+      propertyAccessorOrNull = signatureInfo.propertyAccessorOrNull(_target);
+    } catch (ReflectiveOperationException e) {
+      throw new BadActorMethodException(signatureInfo, e);
+    }
+    return new Dispatch(signatureInfo, FAST_INVOKES.get(signatureInfo.key()), propertyAccessorOrNull, _legacySignatureKeys.contains(signatureInfo.key()));
+  }
+
+  private Dispatch dispatch(Method method) {
+    Dispatch dispatchOrNull = _dispatches.get(method);
+    return null != dispatchOrNull ? dispatchOrNull : newDispatch(SIGNATURE_INFOS.getOrCreate(method)); // Not expected, and not cached as the table is read-only.
   }
 
   private static Set<SignatureKey> getLegacySignatureKeys(Logger log, Class<?> actorInterface) throws BadActorMethodException {
@@ -139,13 +209,24 @@ class ActorInvocationHandler<A extends Actor, E extends Throwable> implements In
   }
 
   public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    return invoke(proxy, dispatch(method), args);
+  }
+
+  public Object invoke(Object proxy, BoundMethod method, Object[] argsOrNull) throws Throwable {
+    try {
+      return invoke(proxy, _boundDispatchesOrNull[method.index()], argsOrNull);
+    } catch (Throwable t) {
+      throw method.declaredOrUndeclared(t);
+    }
+  }
+
+  private Object invoke(Object proxy, Dispatch dispatch, Object[] args) throws Throwable {
+    // The args array belongs to the proxy so we keep it, but the envelopes around it are recycled by the mailbox where possible.
     // XXX: Copy args into pooled array to expedite its gc?
     if (null == args) args = EMPTY_OBJECT_ARRAY;
-    SignatureInfo signatureInfo = SIGNATURE_INFOS.getOrCreate(method);
-    FastInvoke fastInvoke = FAST_INVOKES.get(signatureInfo.key());
-    if (null != fastInvoke) return fastInvoke.invoke(this, proxy, args);
-    Supplier<?> propertyAccessorOrNull = signatureInfo.propertyAccessorOrNull(_target);
-    if (null != propertyAccessorOrNull) return propertyAccessorOrNull.get(); // TODO LATER: Cache the accessor, or make them up-front.
+    if (null != dispatch._fastInvokeOrNull) return dispatch._fastInvokeOrNull.invoke(this, proxy, args);
+    if (null != dispatch._propertyAccessorOrNull) return dispatch._propertyAccessorOrNull.get();
+    SignatureInfo signatureInfo = dispatch._signatureInfo;
     SFuture<?, ?> wrapperOrNull;
     try {
       wrapperOrNull = post((PrivateActor) proxy, signatureInfo, args);
@@ -156,28 +237,15 @@ class ActorInvocationHandler<A extends Actor, E extends Throwable> implements In
         throw new RejectedExecutionException(DEAD_ACTOR_MESSAGE); // The interface method doesn't allow DAE.
       }
     }
-    if (null == wrapperOrNull || !_legacySignatureKeys.contains(signatureInfo.key())) return wrapperOrNull;
+    if (null == wrapperOrNull || !dispatch._legacy) return wrapperOrNull;
     // We recommend in the Actor interface description that the actor method can throw the exceptions that SFuture#sync can throw:
     // TODO LATER: Warn if the actor method is not capable of throwing the exceptions.
     return wrapperOrNull.sync();
   }
 
-  private IncrOrFalse _currentDrain;
-  {
-    synchronized (this) {
-      _currentDrain = NULL_DRAIN;
-    }
-  }
-
   private <V, F extends Throwable> SFuture<V, F> post(PrivateActor actor, SignatureInfo signatureInfo, Object... args) throws DeadActorException {
     SFuture<V, F> wrapperOrNull = _mailbox.add(actor, signatureInfo, args);
-    synchronized (this) {
-      if (!_currentDrain.incrOrFalse()) {
-        Drain drain = new Drain(_mailbox, _log, _targetClass, _target);
-        _threadCollection.execute(drain);
-        _currentDrain = drain;
-      }
-    }
+    _drain.schedule(signatureInfo);
     return wrapperOrNull;
   }
 }
@@ -1,53 +1,168 @@
 package com.github.strangefac.strange.impl;
 
+import static com.github.strangefac.strange.impl.AbstractMailbox.lingerNanos;
+import static com.github.strangefac.strange.util.StrangeUtils.uninterruptibly;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
+import com.github.strangefac.strange.Batch;
 import com.github.strangefac.strange.DeadActorException;
-import com.github.strangefac.strange.IncrOrFalse;
+import com.github.strangefac.strange.Delay;
+import com.github.strangefac.strange.Delay.TaskControl;
+import com.github.strangefac.strange.LingerDelayType;
+import com.github.strangefac.strange.Slow;
+import com.github.strangefac.strange.SlowThreadCollectionType;
+import com.github.strangefac.strange.Throughput;
+import com.github.strangefac.strange.ThreadCollection;
 import com.github.strangefac.strange.impl.StrangeImpl.TargetClass;
 
-class Drain implements IncrOrFalse, Runnable {
-  private final Mailbox _mailbox;
+/**
+ * The one runnable of an actor, which is passed to the {@link ThreadCollection} whenever there is something in the mailbox and it isn't already scheduled or
+ * running. Scheduling costs at most one CAS, so posting takes no lock here. If there is a {@link SlowThreadCollectionType} the drain moves itself between the
+ * thread collections as needed, which can't break serial execution as it remains running throughout.
+ * <p>
+ * A drain whose next batch wants to {@link Batch#lingerMillis() linger} lets go of its thread until a timer of the {@link LingerDelayType} or a post that ends
+ * the linger schedules it again. The next run cancels the timer, so that it neither outlives the linger nor ends a later one.
+ */
+class Drain implements Runnable {
+  private static final int IDLE = 0, SCHEDULED = 1, RUNNING = 2, LINGERING = 3;
+
+  private final AtomicInteger _state = new AtomicInteger(IDLE);
+  private final AbstractMailbox _mailbox;
   private final Logger _log;
   private final TargetClass<?> _targetClass;
   private final Object _target;
-  private int _remaining;
+  private final ThreadCollection _threadCollection, _slowThreadCollectionOrNull;
+  private final Delay _lingerDelayOrNull;
+  private final int _throughput;
+  // Only the drain that currently owns the state touches these, and the thread collections publish them from one run to the next:
+  private boolean _slow;
+  private InvocationLite _handedOverOrNull;
+  /** The batch being waited for, published by the state. */
+  private SignatureInfo _lingeringOrNull;
+  private TaskControl _lingerTimerOrNull;
 
-  /** Creates a runnable that will process just one invocation from the given queue, unless configured to process more using {@link #incrOrFalse()}. */
-  Drain(Mailbox mailbox, Logger log, TargetClass<?> targetClass, Object target) {
+  /**
+   * @param slowThreadCollectionOrNull Where to run {@link Slow} invocations, or null to run them on threadCollection like any other.
+   * @param lingerDelayOrNull Ends lingers, only null if no batch lingers.
+   * @param throughput The max number of invocations per run, see {@link Throughput}.
+   */
+  Drain(AbstractMailbox mailbox, Logger log, TargetClass<?> targetClass, Object target, ThreadCollection threadCollection, ThreadCollection slowThreadCollectionOrNull, Delay lingerDelayOrNull, int throughput) {
     _mailbox = mailbox;
     _log = log;
     _targetClass = targetClass;
     _target = target;
-    synchronized (this) {
-      _remaining = 1;
+    _threadCollection = threadCollection;
+    _slowThreadCollectionOrNull = slowThreadCollectionOrNull;
+    _lingerDelayOrNull = lingerDelayOrNull;
+    _throughput = throughput;
+    _slow = false;
+    _handedOverOrNull = null;
+    _lingeringOrNull = null;
+    _lingerTimerOrNull = null;
+  }
+
+  /** Must be called after each add to the mailbox, so that the invocation is eventually run. */
+  void schedule(SignatureInfo posted) {
+    if (_state.compareAndSet(IDLE, SCHEDULED) || LINGERING == _state.get() && endsLinger(posted) && _state.compareAndSet(LINGERING, SCHEDULED)) execute();
+  }
+
+  private void schedule() {
+    if (_state.compareAndSet(IDLE, SCHEDULED)) execute();
+  }
+
+  /** @return Whether there's no point waiting any more, as the post can't join the lingering batch or it's now full. */
+  private boolean endsLinger(SignatureInfo posted) {
+    SignatureInfo lingering = _lingeringOrNull;
+    if (!lingering.key().equals(posted.key())) return true;
+    try {
+      return _mailbox.size() >= lingering.batchMaxSize();
+    } catch (IllegalStateException e) {
+      return true; // Killed, let the drain find out.
     }
   }
 
-  public synchronized boolean incrOrFalse() {
-    if (0 == _remaining) return false;
-    ++_remaining;
-    return true;
+  private void lingered() {
+    if (_state.compareAndSet(LINGERING, SCHEDULED)) execute();
   }
 
-  public void run() { // Must return normally.
-    int maxBatchSize;
-    synchronized (this) {
-      maxBatchSize = _remaining; // Typically 1, may be greater in theory.
+  /** If the timer already fired, waits for it to finish so that it can't end a later linger. */
+  private void cancelLingerTimer() {
+    TaskControl timer = _lingerTimerOrNull;
+    if (null == timer) return;
+    _lingerTimerOrNull = null;
+    if (!timer.cancelOrAllow()) {
+      try {
+        uninterruptibly(() -> {
+          timer.waitFor();
+          return null;
+        });
+      } catch (ExecutionException e) {
+        _log.error("Linger timer failed:", e);
+      }
+    }
+  }
+
+  /** Must be called by whoever moved the state to scheduled. If the thread collection refuses, the state goes back to idle so that a later post can retry. */
+  private void execute() {
+    try {
+      (_slow ? _slowThreadCollectionOrNull : _threadCollection).execute(this);
+    } catch (RuntimeException | Error e) {
+      _state.set(IDLE);
+      throw e;
     }
+  }
+
+  public void run() { // Must return normally.
+    _state.set(RUNNING);
+    cancelLingerTimer();
     try {
-      while (true) {
-        // Observe we assume there is something in the mailbox, and don't remove more than the authorised amount:
-        InvocationLite invocation = _mailbox.load(_log, _targetClass, _target, maxBatchSize);
+      for (int remaining = _throughput; 0 < remaining;) {
+        InvocationLite invocation = _handedOverOrNull;
+        if (null != invocation) {
+          _handedOverOrNull = null;
+        } else {
+          invocation = _mailbox.load(_log, _targetClass, _target, remaining);
+          if (null == invocation) break;
+          if (null != _slowThreadCollectionOrNull && invocation.slow() != _slow) {
+            // Continue on the other thread collection, with the invocation still loaded so that the mailbox stays consistent:
+            _handedOverOrNull = invocation;
+            _slow = !_slow;
+            try {
+              (_slow ? _slowThreadCollectionOrNull : _threadCollection).execute(this);
+              return; // Still running as far as posts are concerned.
+            } catch (RuntimeException e) {
+              _log.error("Failed to hand over drain, continuing on this thread:", e);
+              _slow = !_slow;
+              continue; // With the handed over invocation.
+            }
+          }
+        }
         invocation.run();
+        remaining -= invocation.batchSize(); // Before unload, which may recycle the invocation.
         _mailbox.unload();
-        synchronized (this) {
-          _remaining -= invocation.batchSize();
-          if (0 == _remaining) break;
-          maxBatchSize = _remaining;
-        }
       }
     } catch (DeadActorException e) {
       _log.debug("Abort drain due to actor kill."); // The mailbox has already cancelled the remaining tasks.
     }
+    try {
+      InvocationInfo<?, ?> lingeringOrNull = _mailbox.lingeringOrNull();
+      long lingerNanos = null == lingeringOrNull ? 0 : lingerNanos(lingeringOrNull);
+      if (0 != lingerNanos) {
+        _lingeringOrNull = lingeringOrNull.signatureInfo();
+        long lingerEndNanos = System.nanoTime() + lingerNanos;
+        _lingerTimerOrNull = _lingerDelayOrNull.after(lingerNanos / 1e9, this::lingered); // Before the state publishes it.
+        _state.set(LINGERING);
+        // A post that found us running relies on the first check, and a timer that fired before the state was set on the second:
+        if (null == _mailbox.lingeringOrNull() || System.nanoTime() - lingerEndNanos >= 0) lingered();
+        return;
+      }
+      _state.set(IDLE);
+      // A post that found us running relies on this check, and if we ran out of throughput the reschedule gives other actors a turn:
+      if (!_mailbox.isEmpty()) schedule();
+    } catch (RuntimeException e) {
+      _state.set(IDLE); // Already the case if the thread collection refused, either way the next post retries.
+      _log.error("Failed to reschedule drain:", e);
+    }
   }
 }
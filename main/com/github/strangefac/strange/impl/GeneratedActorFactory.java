@@ -0,0 +1,379 @@
+package com.github.strangefac.strange.impl;
+
+import static com.github.strangefac.strange.impl.ActorInvocationHandler.OBJECT_METHODS;
+import java.io.ByteArrayOutputStream;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.github.strangefac.strange.Actor;
+import com.github.strangefac.strange.GeneratedProxy;
+import com.github.strangefac.strange.PrivateActor;
+import com.github.strangefac.strange.impl.SignatureInfo.SignatureKey;
+import com.github.strangefac.strange.impl.StrangeImpl.ActorFactory;
+import com.github.strangefac.strange.util.TypedArrayList;
+import com.github.strangefac.strange.util.UncheckedCast;
+import gnu.trove.map.hash.THashMap;
+
+/**
+ * Low-level actor instance creator for {@link GeneratedProxy} actors. The class is generated directly as bytecode, each method boxes its args and calls the
+ * {@link Handler} with its {@link BoundMethod}, held in a private static final field. Otherwise behaves like {@link Proxy}, which is still used via
+ * {@link ActorFactory} when generation isn't possible.
+ */
+public class GeneratedActorFactory<A extends Actor> {
+  /** What generated actors call into. Public only so that they can link against it. */
+  public interface Handler {
+    Object invoke(Object proxy, BoundMethod method, Object[] argsOrNull) throws Throwable;
+  }
+
+  /** A method of a generated actor class. Public only so that generated code can link against it. */
+  public static final class BoundMethod {
+    private final int _index;
+    private final Method _method;
+    private final Class<?>[] _exceptionTypes;
+
+    private BoundMethod(int index, Method method) {
+      _index = index;
+      _method = method;
+      _exceptionTypes = method.getExceptionTypes();
+    }
+
+    /** @return The position of this in {@link GeneratedActorFactory#boundMethods()}, so that a handler can index its own table. */
+    int index() {
+      return _index;
+    }
+
+    Method method() {
+      return _method;
+    }
+
+    /** @return The given throwable, or an {@link UndeclaredThrowableException} if the method can't throw it, as {@link Proxy} would do. */
+    Throwable declaredOrUndeclared(Throwable t) {
+      if (t instanceof RuntimeException || t instanceof Error) return t;
+      for (Class<?> exceptionType : _exceptionTypes) {
+        if (exceptionType.isInstance(t)) return t;
+      }
+      return new UndeclaredThrowableException(t);
+    }
+  }
+
+  private static class Bytes extends ByteArrayOutputStream {
+    private Bytes u1(int value) {
+      write(value);
+      return this;
+    }
+
+    private Bytes u2(int value) {
+      return u1(value >>> 8).u1(value);
+    }
+
+    private Bytes u4(int value) {
+      return u2(value >>> 16).u2(value);
+    }
+
+    private Bytes bytes(Bytes that) {
+      write(that.buf, 0, that.count);
+      return this;
+    }
+  }
+
+  private static class ConstantPool {
+    private final Bytes _entries = new Bytes();
+    private final THashMap<String, Integer> _indices = new THashMap<>();
+    private int _count = 1; // Index 0 is not used.
+
+    /** Any indices referred to by the entry must already be allocated, so that the entries are written in dependency order. */
+    private int index(String key, int tag, int... u2s) {
+      Integer indexOrNull = _indices.get(key);
+      if (null != indexOrNull) return indexOrNull;
+      _entries.u1(tag);
+      for (int u2 : u2s)
+        _entries.u2(u2);
+      _indices.put(key, _count);
+      return _count++;
+    }
+
+    int utf8(String s) {
+      Integer indexOrNull = _indices.get("U" + s);
+      if (null != indexOrNull) return indexOrNull;
+      Bytes modifiedUtf8 = new Bytes();
+      for (int i = 0; i < s.length(); ++i) {
+        char c = s.charAt(i);
+        if (0 != c && c < 0x80) {
+          modifiedUtf8.u1(c);
+        } else if (c < 0x800) {
+          modifiedUtf8.u1(0xc0 | c >> 6).u1(0x80 | c & 0x3f);
+        } else {
+          modifiedUtf8.u1(0xe0 | c >> 12).u1(0x80 | c >> 6 & 0x3f).u1(0x80 | c & 0x3f);
+        }
+      }
+      _entries.u1(1).u2(modifiedUtf8.size()).bytes(modifiedUtf8);
+      _indices.put("U" + s, _count);
+      return _count++;
+    }
+
+    int string(String s) {
+      return index("S" + s, 8, utf8(s));
+    }
+
+    int classRef(String internalName) {
+      return index("C" + internalName, 7, utf8(internalName));
+    }
+
+    int classRef(Class<?> type) {
+      return classRef(internalName(type));
+    }
+
+    private int nameAndType(String name, String descriptor) {
+      return index("N" + name + ' ' + descriptor, 12, utf8(name), utf8(descriptor));
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+      return index("F" + owner + ' ' + name + ' ' + descriptor, 9, classRef(owner), nameAndType(name, descriptor));
+    }
+
+    int methodRef(Class<?> owner, String name, MethodType type) {
+      boolean isInterface = owner.isInterface();
+      String descriptor = type.toMethodDescriptorString();
+      return index((isInterface ? "I" : "M") + internalName(owner) + ' ' + name + ' ' + descriptor, isInterface ? 11 : 10, classRef(owner), nameAndType(name, descriptor));
+    }
+  }
+
+  private static String internalName(Class<?> type) {
+    return type.getName().replace('.', '/'); // Also correct for array classes.
+  }
+
+  private static String descriptor(Class<?> type) {
+    return MethodType.methodType(type).toMethodDescriptorString().substring(2); // Remove the "()".
+  }
+
+  private static final String PACKAGE = "com.github.strangefac.strange.impl.generated.";
+  private static final String HANDLER = "handler", CODE = "Code";
+  private static final int ACC_PUBLIC = 0x0001, ACC_PRIVATE = 0x0002, ACC_STATIC = 0x0008, ACC_FINAL = 0x0010, ACC_SUPER = 0x0020;
+  private static final int ACONST_NULL = 0x01, ICONST_0 = 0x03, BIPUSH = 0x10, SIPUSH = 0x11, LDC_W = 0x13, ILOAD = 0x15, ALOAD_0 = 0x2a, ALOAD_1 = 0x2b,
+      AALOAD = 0x32, AASTORE = 0x53, POP = 0x57, DUP = 0x59, IRETURN = 0xac, RETURN = 0xb1, GETSTATIC = 0xb2, PUTSTATIC = 0xb3, GETFIELD = 0xb4, PUTFIELD = 0xb5,
+      INVOKEVIRTUAL = 0xb6, INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8, INVOKEINTERFACE = 0xb9, ANEWARRAY = 0xbd, CHECKCAST = 0xc0;
+  private static final int MAX_STACK = 8; // Handler, proxy, method, array, array, index, and a long/double arg.
+  private static final AtomicInteger CLASS_COUNTER = new AtomicInteger();
+  /** The bound methods of each generated class by name, until its static initializer takes them. */
+  private static final Map<String, BoundMethod[]> PENDING_BOUND_METHODS = new ConcurrentHashMap<>();
+
+  /**
+   * Called once by the static initializer of each generated class, so that its fields can be final. Public only so that generated code can link against it.
+   * 
+   * @throws IllegalStateException If the class isn't being generated, or has already taken its bound methods.
+   */
+  public static BoundMethod[] takeBoundMethods(String className) throws IllegalStateException {
+    BoundMethod[] boundMethodsOrNull = PENDING_BOUND_METHODS.remove(className);
+    if (null == boundMethodsOrNull) throw new IllegalStateException("No bound methods pending: " + className);
+    return boundMethodsOrNull;
+  }
+
+  /** @return 0 for int-like, 1 long, 2 float, 3 double, 4 reference, for adding to the int variant of a load or return opcode. */
+  private static int opcodeOffset(Class<?> type) {
+    if (!type.isPrimitive()) return 4;
+    if (long.class == type) return 1;
+    if (float.class == type) return 2;
+    if (double.class == type) return 3;
+    return 0;
+  }
+
+  private static int slots(Class<?> type) {
+    return long.class == type || double.class == type ? 2 : 1;
+  }
+
+  private static void pushInt(Bytes code, int value) {
+    if (value <= 5) {
+      code.u1(ICONST_0 + value);
+    } else if (value <= Byte.MAX_VALUE) {
+      code.u1(BIPUSH).u1(value);
+    } else {
+      code.u1(SIPUSH).u2(value);
+    }
+  }
+
+  /** @return The methods to implement in the same style as {@link Proxy}, or null if a method can't be implemented by a class in another package. */
+  private static List<Method> proxyMethodsOrNull(Class<?>... interfaces) {
+    THashMap<SignatureKey, Method> keyToMethod = new THashMap<>();
+    List<Method> methods = new TypedArrayList<>(Method.class);
+    List<Method> candidates = new TypedArrayList<>(Method.class);
+    candidates.addAll(OBJECT_METHODS);
+    for (Class<?> i : interfaces) {
+      if (!Modifier.isPublic(i.getModifiers())) return null;
+      candidates.addAll(Arrays.asList(i.getMethods()));
+    }
+    for (Method method : candidates) {
+      if (Modifier.isStatic(method.getModifiers())) continue;
+      Class<?> returnType = method.getReturnType();
+      while (returnType.isArray())
+        returnType = returnType.getComponentType();
+      if (!returnType.isPrimitive() && !Modifier.isPublic(returnType.getModifiers())) return null; // We'd need to cast to it.
+      SignatureKey key = new SignatureKey(method.getName(), method.getParameterTypes());
+      Method existingOrNull = keyToMethod.get(key);
+      if (null == existingOrNull) {
+        keyToMethod.put(key, method);
+        methods.add(method);
+      } else if (existingOrNull.getReturnType() != method.getReturnType() || !Arrays.equals(existingOrNull.getExceptionTypes(), method.getExceptionTypes())) {
+        return null; // Proxy has rules for this, but it's rare enough to just fall back.
+      }
+    }
+    return methods;
+  }
+
+  private static class ProxyClassLoader extends ClassLoader {
+    private ProxyClassLoader(ClassLoader parent) {
+      super(parent);
+    }
+
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+      return GeneratedActorFactory.class.getClassLoader().loadClass(name); // In case the parent can't see strange.
+    }
+
+    private Class<?> define(String name, byte[] classFile) {
+      return defineClass(name, classFile, 0, classFile.length);
+    }
+  }
+
+  private static Bytes generate(String internalName, Class<?>[] interfaces, List<Method> methods) {
+    ConstantPool pool = new ConstantPool();
+    Bytes body = new Bytes();
+    body.u2(ACC_PUBLIC | ACC_FINAL | ACC_SUPER).u2(pool.classRef(internalName)).u2(pool.classRef(Object.class));
+    body.u2(interfaces.length);
+    for (Class<?> i : interfaces)
+      body.u2(pool.classRef(i));
+    String handlerDescriptor = descriptor(Handler.class), boundMethodDescriptor = descriptor(BoundMethod.class);
+    body.u2(1 + methods.size());
+    body.u2(ACC_PRIVATE | ACC_FINAL).u2(pool.utf8(HANDLER)).u2(pool.utf8(handlerDescriptor)).u2(0);
+    for (int i = 0; i < methods.size(); ++i)
+      body.u2(ACC_PRIVATE | ACC_STATIC | ACC_FINAL).u2(pool.utf8("m" + i)).u2(pool.utf8(boundMethodDescriptor)).u2(0);
+    int handlerField = pool.fieldRef(internalName, HANDLER, handlerDescriptor);
+    body.u2(2 + methods.size());
+    {
+      Bytes code = new Bytes();
+      code.u1(LDC_W).u2(pool.string(internalName.replace('/', '.')));
+      code.u1(INVOKESTATIC).u2(pool.methodRef(GeneratedActorFactory.class, "takeBoundMethods", MethodType.methodType(BoundMethod[].class, String.class)));
+      for (int i = 0; i < methods.size(); ++i) {
+        code.u1(DUP);
+        pushInt(code, i);
+        code.u1(AALOAD).u1(PUTSTATIC).u2(pool.fieldRef(internalName, "m" + i, boundMethodDescriptor));
+      }
+      code.u1(POP).u1(RETURN);
+      method(pool, body, ACC_STATIC, "<clinit>", MethodType.methodType(void.class), 3, 0, code); // Array, array, index.
+    }
+    {
+      Bytes code = new Bytes();
+      code.u1(ALOAD_0).u1(INVOKESPECIAL).u2(pool.methodRef(Object.class, "<init>", MethodType.methodType(void.class)));
+      code.u1(ALOAD_0).u1(ALOAD_1).u1(PUTFIELD).u2(handlerField);
+      code.u1(RETURN);
+      method(pool, body, ACC_PUBLIC, "<init>", MethodType.methodType(void.class, Handler.class), 2, 2, code);
+    }
+    int invoke = pool.methodRef(Handler.class, "invoke", MethodType.methodType(Object.class, Object.class, BoundMethod.class, Object[].class));
+    for (int i = 0; i < methods.size(); ++i) {
+      Method method = methods.get(i);
+      Class<?>[] parameterTypes = method.getParameterTypes();
+      Bytes code = new Bytes();
+      code.u1(ALOAD_0).u1(GETFIELD).u2(handlerField).u1(ALOAD_0).u1(GETSTATIC).u2(pool.fieldRef(internalName, "m" + i, boundMethodDescriptor));
+      int slot = 1;
+      if (0 == parameterTypes.length) {
+        code.u1(ACONST_NULL); // Like Proxy.
+      } else {
+        pushInt(code, parameterTypes.length);
+        code.u1(ANEWARRAY).u2(pool.classRef(Object.class));
+        for (int p = 0; p < parameterTypes.length; ++p) {
+          Class<?> type = parameterTypes[p];
+          code.u1(DUP);
+          pushInt(code, p);
+          code.u1(ILOAD + opcodeOffset(type)).u1(slot);
+          if (type.isPrimitive()) {
+            Class<?> wrapper = MethodType.methodType(type).wrap().returnType();
+            code.u1(INVOKESTATIC).u2(pool.methodRef(wrapper, "valueOf", MethodType.methodType(wrapper, type)));
+          }
+          code.u1(AASTORE);
+          slot += slots(type);
+        }
+      }
+      code.u1(INVOKEINTERFACE).u2(invoke).u1(4).u1(0);
+      Class<?> returnType = method.getReturnType();
+      if (void.class == returnType) {
+        code.u1(POP).u1(RETURN);
+      } else {
+        if (returnType.isPrimitive()) {
+          Class<?> wrapper = MethodType.methodType(returnType).wrap().returnType();
+          code.u1(CHECKCAST).u2(pool.classRef(wrapper));
+          code.u1(INVOKEVIRTUAL).u2(pool.methodRef(wrapper, returnType.getName() + "Value", MethodType.methodType(returnType))); // NPE on null, like Proxy.
+        } else if (Object.class != returnType) {
+          code.u1(CHECKCAST).u2(pool.classRef(returnType));
+        }
+        code.u1(IRETURN + opcodeOffset(returnType));
+      }
+      method(pool, body, ACC_PUBLIC | ACC_FINAL, method.getName(), MethodType.methodType(returnType, parameterTypes), MAX_STACK, slot, code);
+    }
+    body.u2(0); // No class attributes.
+    return new Bytes().u4(0xcafebabe).u2(0).u2(52).u2(pool._count).bytes(pool._entries).bytes(body);
+  }
+
+  /** The code must not branch, as we don't generate a StackMapTable. */
+  private static void method(ConstantPool pool, Bytes body, int access, String name, MethodType type, int maxStack, int maxLocals, Bytes code) {
+    body.u2(access).u2(pool.utf8(name)).u2(pool.utf8(type.toMethodDescriptorString())).u2(1);
+    body.u2(pool.utf8(CODE)).u4(12 + code.size()).u2(maxStack).u2(maxLocals).u4(code.size()).bytes(code).u2(0).u2(0);
+  }
+
+  /** @return A factory for the given actor interface, or null if it can't be implemented by a generated class. */
+  static <A extends Actor> GeneratedActorFactory<A> createOrNull(Class<A> actorInterface) {
+    Class<?>[] interfaces = {actorInterface, PrivateActor.class};
+    try {
+      List<Method> methods = proxyMethodsOrNull(interfaces);
+      if (null == methods) return null;
+      String name = PACKAGE + actorInterface.getName().replace('.', '_') + '$' + CLASS_COUNTER.incrementAndGet();
+      BoundMethod[] boundMethods = new BoundMethod[methods.size()];
+      for (int i = 0; i < boundMethods.length; ++i)
+        boundMethods[i] = new BoundMethod(i, methods.get(i));
+      PENDING_BOUND_METHODS.put(name, boundMethods);
+      Class<?> impl;
+      try {
+        impl = new ProxyClassLoader(actorInterface.getClassLoader()).define(name, generate(name.replace('.', '/'), interfaces, methods).toByteArray());
+        Class.forName(name, true, impl.getClassLoader()); // Take the bound methods now, rather than on first use.
+      } finally {
+        PENDING_BOUND_METHODS.remove(name); // Normally already taken.
+      }
+      return new GeneratedActorFactory<>(UncheckedCast.<Class<?>, Class<? extends A>> uncheckedCast(impl), boundMethods);
+    } catch (NoSuchMethodException | ClassNotFoundException e) { // Bugs.
+      throw new RuntimeException(e);
+    }
+  }
+
+  private final Class<? extends A> _impl;
+  private final Constructor<? extends A> _constructor;
+  private final BoundMethod[] _boundMethods;
+
+  private GeneratedActorFactory(Class<? extends A> impl, BoundMethod[] boundMethods) throws NoSuchMethodException {
+    _impl = impl;
+    _constructor = impl.getConstructor(Handler.class);
+    _boundMethods = boundMethods;
+  }
+
+  /** @return Indexed by {@link BoundMethod#index()}, must not be modified. */
+  BoundMethod[] boundMethods() {
+    return _boundMethods;
+  }
+
+  public Class<? extends A> impl() {
+    return _impl;
+  }
+
+  public A create(Handler handler) {
+    try {
+      return _constructor.newInstance(handler);
+    } catch (IllegalAccessException | InstantiationException | InvocationTargetException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -1,13 +1,9 @@
 package com.github.strangefac.strange.impl;
 
-import static com.github.strangefac.strange.util.StrangeUtils.uninterruptibly;
+import static com.github.strangefac.strange.impl.OneWayWrapper.ONE_WAY_WRAPPER;
 import static com.github.strangefac.strange.util.UncheckedCast.uncheckedCast;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.Arrays;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.FutureTask;
 import org.slf4j.Logger;
 import com.github.strangefac.strange.AfterTask;
 import com.github.strangefac.strange.BasicJoin;
@@ -18,121 +14,205 @@ import com.github.strangefac.strange.Task;
 import com.github.strangefac.strange.VoidTask;
 import com.github.strangefac.strange.Wrapper;
 import com.github.strangefac.strange.impl.SignatureInfo.SignatureKey;
+import com.github.strangefac.strange.impl.StrangeImpl.Invoker;
 import com.github.strangefac.strange.impl.StrangeImpl.TargetClass;
 import com.github.strangefac.strange.util.UncheckedCast;
 import gnu.trove.set.hash.THashSet;
 
-class Invocation<V, E extends Throwable> extends FutureTask<V> implements InvocationLite {
+/**
+ * Runs one loaded message (or batch) against the target, like a {@link java.util.concurrent.FutureTask} but completing the wrapper directly. Once finished it
+ * can be cleared and reused for a later message of the same mailbox, see {@link #clearIfFinished()}.
+ */
+class Invocation<V, E extends Throwable> implements InvocationLite {
   private static final SignatureKey PUBLIC_POST_TASK_SIGNATURE_KEY = new SignatureKey("post", Task.class);
   private static final SignatureKey POST_VOID_TASK_SIGNATURE_KEY = new SignatureKey("post", VoidTask.class);
   static final SignatureKey PRIVATE_POST_TASK_SIGNATURE_KEY = new SignatureKey("post", Task.class, Wrapper.class);
   private static final THashSet<SignatureKey> POST_TASK_SIGNATURE_KEYS = new THashSet<>(Arrays.asList(PUBLIC_POST_TASK_SIGNATURE_KEY, PRIVATE_POST_TASK_SIGNATURE_KEY));
   static final String STACK_TRACE_NOT_LOGGED_HERE_FORMAT = "{} stack trace not logged here: {}";
-  private final Wrapper<V, E> _wrapper;
-  private final PrivateActor _actor;
-  private final long _nanoTime;
-  private final int _batchSize;
-  private final boolean _yield, _slow;
+  static final String ONE_WAY_FAILURE_FORMAT = "One-way {} failed:";
+
+  private enum State {
+    NEW, RUNNING, DONE, CANCELLED
+  }
+
+  private Logger _log;
+  private SignatureInfo _signatureInfo;
+  private TargetClass<?> _targetClass;
+  private Object _target;
+  private Object[] _args;
+  private Wrapper<V, E> _wrapper;
+  private PrivateActor _actor;
+  private long _nanoTime;
+  private int _batchSize;
+  private boolean _afterTaskEnabled;
+  private State _state;
+  private Thread _runnerOrNull;
 
   /** @param batchSize The number of {@link InvocationInfo} objects covered by this object. */
   Invocation(Logger log, SignatureInfo signatureInfo, TargetClass<?> targetClass, Object target, Object[] args, Wrapper<V, E> wrapper, PrivateActor actor, long nanoTime, int batchSize, boolean afterTaskEnabled) {
-    super(new Callable<V>() {
-      private <T extends Throwable> T log(T t) {
-        try {
-          throw SFutureImpl.<E> unwrapCauseOfExecutionException(t);
-        } catch (Throwable u) {
-          log.debug(STACK_TRACE_NOT_LOGGED_HERE_FORMAT, signatureInfo, u);
-        }
-        return t;
-      }
+    init(log, signatureInfo, targetClass, target, args, wrapper, actor, nanoTime, batchSize, afterTaskEnabled);
+  }
 
-      public V call() throws Exception {
-        // Observe we log the throwable if we think it will never be retrieved from the Future:
-        try {
-          if (POST_TASK_SIGNATURE_KEYS.contains(signatureInfo.key())) {
-            Task<? extends V, ? extends E> task = UncheckedCast.uncheckedCast(args[0]); // Fake method body.
-            try {
-              return task.run();
-            } catch (Throwable t) { // Even Suspension(s), which are unwrapped later.
-              throw new InvocationTargetException(t, "Posted task failed."); // Simulate behaviour of real method call.
-            }
-          } else if (POST_VOID_TASK_SIGNATURE_KEY.equals(signatureInfo.key())) {
-            VoidTask<? extends E> task = UncheckedCast.uncheckedCast(args[0]);
-            try {
-              task.run();
-            } catch (Throwable t) {
-              throw new InvocationTargetException(t, "Posted task failed.");
-            }
-            return null;
-          } else {
-            // We resolve the method so late so that the throwable gets stored in the Future:
-            Method method = targetClass.resolve(signatureInfo.key());
-            return UncheckedCast.uncheckedCast(method.invoke(target, args));
-          }
-        } catch (Exception e) {
-          if (e instanceof InvocationTargetException && e.getCause() instanceof Suspension) {
-            throw e; // Never log, it has special behaviour.
-          } else {
-            throw log(e);
-          }
-        } catch (Error e) {
-          throw log(e);
-        } finally {
-          if (afterTaskEnabled) { // Literally means the cast will succeed.
-            try {
-              ((AfterTask) target).afterTask();
-            } catch (Throwable t) {
-              log.error("afterTask failed:", t);
-            }
-          }
-        }
-      }
-    });
+  /** Like the constructor, but reuses this object which must have been {@link #clearIfFinished() cleared}. */
+  <W, F extends Throwable> Invocation<W, F> reuse(Logger log, SignatureInfo signatureInfo, TargetClass<?> targetClass, Object target, Object[] args, Wrapper<W, F> wrapper, PrivateActor actor, long nanoTime, int batchSize, boolean afterTaskEnabled) {
+    Invocation<W, F> that = UncheckedCast.<Invocation<?, ?>, Invocation<W, F>> uncheckedCast(this);
+    that.init(log, signatureInfo, targetClass, target, args, wrapper, actor, nanoTime, batchSize, afterTaskEnabled);
+    return that;
+  }
+
+  private synchronized void init(Logger log, SignatureInfo signatureInfo, TargetClass<?> targetClass, Object target, Object[] args, Wrapper<V, E> wrapper, PrivateActor actor, long nanoTime, int batchSize, boolean afterTaskEnabled) {
+    _log = log;
+    _signatureInfo = signatureInfo;
+    _targetClass = targetClass;
+    _target = target;
+    _args = args;
     _wrapper = wrapper;
     _actor = actor;
     _nanoTime = nanoTime;
     _batchSize = batchSize;
-    _yield = signatureInfo.yield();
-    _slow = signatureInfo.slow();
+    _afterTaskEnabled = afterTaskEnabled;
+    _state = State.NEW;
+    _runnerOrNull = null;
+  }
+
+  /** @return Whether this has finished with its message, in which case it has forgotten it and may be reused. */
+  synchronized boolean clearIfFinished() {
+    if (State.DONE != _state && State.CANCELLED != _state || null != _runnerOrNull) return false;
+    _log = null;
+    _signatureInfo = null;
+    _targetClass = null;
+    _target = null;
+    _args = null;
+    _wrapper = null;
+    _actor = null;
+    return true;
   }
 
-  public boolean slow() {
-    return _slow;
+  public synchronized boolean slow() {
+    return _signatureInfo.slow();
   }
 
-  public long nanoTime() {
+  public synchronized long nanoTime() {
     return _nanoTime;
   }
 
-  public int batchSize() {
+  public synchronized int batchSize() {
     return _batchSize;
   }
 
   public void cancelWithInterrupt(boolean notJustIfYield) {
-    if (notJustIfYield || _yield) {
+    boolean yield;
+    synchronized (this) {
+      if (null == _signatureInfo) return; // Finished and cleared.
+      yield = _signatureInfo.yield();
+    }
+    if (notJustIfYield || yield) {
       // We don't care about the return value, we just want the invocation to exit:
       cancel(true); // A method annotated with Yield expects that it may get an interrupt.
     }
   }
 
-  // FIXME LATER: Don't let system break when IllegalStateException thrown here, e.g. user made wrapper done or a Suspension offered more than one outcome.
-  protected void done() { // The super impl does nothing.
-    if (isCancelled()) {
-      _wrapper.putCancelled(); // Propagate the cancelled state.
-    } else {
-      // It wasn't a cancel, so this is the same thread that executed the above Callable, which is important in the no suspendables case.
-      try {
-        _wrapper.putValue(uninterruptibly(this::get)); // It should be fine to get uninterruptibly as we know this is done.
-      } catch (ExecutionException e) {
-        if (e.getCause() instanceof InvocationTargetException && e.getCause().getCause() instanceof Suspension) {
-          suspension((Suspension) e.getCause().getCause());
-        } else {
-          _wrapper.putCauseOfExecutionException(e.getCause());
+  /** As per {@link java.util.concurrent.Future#cancel(boolean)}, the wrapper is cancelled by this thread and any outcome of the run is discarded. */
+  boolean cancel(boolean mayInterruptIfRunning) {
+    Wrapper<V, E> wrapper;
+    synchronized (this) {
+      if (State.NEW != _state && State.RUNNING != _state) return false;
+      if (mayInterruptIfRunning && null != _runnerOrNull) _runnerOrNull.interrupt(); // While holding the lock, so it can't hit whatever the runner does next.
+      _state = State.CANCELLED;
+      wrapper = _wrapper;
+    }
+    wrapper.putCancelled(); // Propagate the cancelled state.
+    return true;
+  }
+
+  public void run() {
+    synchronized (this) {
+      if (State.NEW != _state) return; // Cancelled before running.
+      _state = State.RUNNING;
+      _runnerOrNull = Thread.currentThread();
+    }
+    V value = null;
+    Throwable throwableOrNull = null;
+    try {
+      value = call();
+    } catch (Throwable t) {
+      throwableOrNull = t;
+    }
+    synchronized (this) {
+      _runnerOrNull = null;
+      if (State.RUNNING != _state) return; // Cancelled while running, the canceller has already propagated that.
+      _state = State.DONE;
+    }
+    done(value, throwableOrNull);
+  }
+
+  private <T extends Throwable> T log(T t) {
+    try {
+      throw SFutureImpl.<E> unwrapCauseOfExecutionException(t);
+    } catch (Throwable u) {
+      if (_signatureInfo.oneWay()) {
+        _log.error(ONE_WAY_FAILURE_FORMAT, _signatureInfo, u); // Nobody can retrieve it from the wrapper.
+      } else {
+        _log.debug(STACK_TRACE_NOT_LOGGED_HERE_FORMAT, _signatureInfo, u);
+      }
+    }
+    return t;
+  }
+
+  private V call() throws Exception {
+    // Observe we log the throwable if we think it will never be retrieved from the wrapper, which is certain for one-way:
+    try {
+      if (POST_TASK_SIGNATURE_KEYS.contains(_signatureInfo.key())) {
+        Task<? extends V, ? extends E> task = UncheckedCast.uncheckedCast(_args[0]); // Fake method body.
+        try {
+          return task.run();
+        } catch (Throwable t) { // Even Suspension(s), which are unwrapped later.
+          throw new InvocationTargetException(t, "Posted task failed."); // Simulate behaviour of real method call.
+        }
+      } else if (POST_VOID_TASK_SIGNATURE_KEY.equals(_signatureInfo.key())) {
+        VoidTask<? extends E> task = UncheckedCast.uncheckedCast(_args[0]);
+        try {
+          task.run();
+        } catch (Throwable t) {
+          throw new InvocationTargetException(t, "Posted task failed.");
+        }
+        return null;
+      } else {
+        // We resolve the method so late so that the throwable goes to the wrapper:
+        Invoker invoker = _targetClass.resolve(_signatureInfo.key());
+        return UncheckedCast.uncheckedCast(invoker.invoke(_target, _args));
+      }
+    } catch (Exception e) {
+      if (e instanceof InvocationTargetException && e.getCause() instanceof Suspension) {
+        throw e; // Never log, it has special behaviour.
+      } else {
+        throw log(e);
+      }
+    } catch (Error e) {
+      throw log(e);
+    } finally {
+      if (_afterTaskEnabled) { // Literally means the cast will succeed.
+        try {
+          ((AfterTask) _target).afterTask();
+        } catch (Throwable t) {
+          _log.error("afterTask failed:", t);
         }
       }
     }
   }
 
+  // FIXME LATER: Don't let system break when IllegalStateException thrown here, e.g. user made wrapper done or a Suspension offered more than one outcome.
+  private void done(V value, Throwable throwableOrNull) {
+    // It wasn't a cancel, so this is the same thread that executed the call, which is important in the no suspendables case.
+    if (null == throwableOrNull) {
+      _wrapper.putValue(value);
+    } else if (throwableOrNull instanceof InvocationTargetException && throwableOrNull.getCause() instanceof Suspension) {
+      suspension((Suspension) throwableOrNull.getCause());
+    } else {
+      _wrapper.putCauseOfExecutionException(throwableOrNull);
+    }
+  }
+
   private void suspension(Suspension suspension) {
     BasicJoin<?> join = suspension.getJoin();
     if (0 == join.size()) {
@@ -145,15 +225,18 @@ class Invocation<V, E extends Throwable> extends FutureTask<V> implements Invoca
       } catch (Suspension s) {
         suspension(s);
       } catch (RuntimeException | Error t) {
-        _wrapper.putCauseOfExecutionException(new InvocationTargetException(t));
+        _wrapper.putCauseOfExecutionException(log(new InvocationTargetException(t)));
       } catch (Throwable t) {
+        log(new InvocationTargetException(t));
         _wrapper.putCauseOfInvocationTargetException(uncheckedCast(t));
       }
       if (valueFlag) _wrapper.putValue(uncheckedCast(value));
     } else {
+      // The shared one-way wrapper would discard failures of the done block, or the actor having died:
+      Wrapper<V, E> wrapper = ONE_WAY_WRAPPER == _wrapper ? uncheckedCast(new OneWayWrapper(_log, _signatureInfo)) : _wrapper;
       // Make each subtask post the done method to this actor:
       for (Suspendable subtask : join)
-        subtask.postAfterDone(_actor, new PassSubtaskToDone<>(suspension, subtask), _wrapper);
+        subtask.postAfterDone(_actor, new PassSubtaskToDone<>(suspension, subtask), wrapper);
     }
   }
 
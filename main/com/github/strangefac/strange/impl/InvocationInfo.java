@@ -1,32 +1,56 @@
 package com.github.strangefac.strange.impl;
 
 import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
 import org.slf4j.Logger;
 import com.github.strangefac.strange.Actor;
 import com.github.strangefac.strange.MailboxElement;
 import com.github.strangefac.strange.PrivateActor;
+import com.github.strangefac.strange.Syncable;
+import com.github.strangefac.strange.Syncable.AbruptSyncable;
+import com.github.strangefac.strange.Syncable.NormalSyncable;
 import com.github.strangefac.strange.Wrapper;
 import com.github.strangefac.strange.impl.StrangeImpl.TargetClass;
 import com.github.strangefac.strange.util.UncheckedCast;
 
 class InvocationInfo<V, E extends Throwable> implements MailboxElement {
-  private final long _nanoTime = System.nanoTime(); // On my Linux VM, performance is competitive with currentTimeMillis.
-  private final Wrapper<V, E> _wrapper;
-  private final PrivateActor _actor;
-  private final SignatureInfo _signatureInfo;
-  private final Object[] _args; // Note this final field is what ensures safe publication of the args.
+  private long _nanoTime;
+  private Wrapper<V, E> _wrapper;
+  private PrivateActor _actor;
+  private SignatureInfo _signatureInfo;
+  private Object[] _args; // Safely published by the mailbox along with the info itself.
 
   /** For accuracy of {@link Actor#getDwellInfo()} this should be added to the mailbox immediately. */
   InvocationInfo(Wrapper<V, E> wrapper, PrivateActor actor, SignatureInfo signatureInfo, Object... args) {
+    init(wrapper, actor, signatureInfo, args);
+  }
+
+  /** Like the constructor, but reuses this object which must have been {@link #clear() cleared}. */
+  <W, F extends Throwable> InvocationInfo<W, F> reuse(Wrapper<W, F> wrapper, PrivateActor actor, SignatureInfo signatureInfo, Object... args) {
+    InvocationInfo<W, F> that = UncheckedCast.<InvocationInfo<?, ?>, InvocationInfo<W, F>> uncheckedCast(this);
+    that.init(wrapper, actor, signatureInfo, args);
+    return that;
+  }
+
+  private void init(Wrapper<V, E> wrapper, PrivateActor actor, SignatureInfo signatureInfo, Object... args) {
+    _nanoTime = System.nanoTime(); // On my Linux VM, performance is competitive with currentTimeMillis.
     _wrapper = wrapper;
     _actor = actor;
     _signatureInfo = signatureInfo;
     _args = args;
   }
 
+  /** Forget the message, only once nothing refers to this info any more. */
+  void clear() {
+    _wrapper = null;
+    _actor = null;
+    _signatureInfo = null;
+    _args = null;
+  }
+
   long nanoTime() {
     return _nanoTime;
   }
@@ -35,6 +59,27 @@ class InvocationInfo<V, E extends Throwable> implements MailboxElement {
     return _signatureInfo;
   }
 
+  Wrapper<V, E> wrapper() {
+    return _wrapper;
+  }
+
+  /** Only meaningful if the signature is {@link com.github.strangefac.strange.Conflate}. */
+  Object conflationKey() {
+    return _signatureInfo.conflationKey(_args);
+  }
+
+  /**
+   * Takes over the message of that info, which has the same signature, keeping the place and time of this one. That info can then be recycled.
+   * 
+   * @return The wrapper of the superseded message.
+   */
+  Wrapper<?, ?> supersede(InvocationInfo<?, ?> that) {
+    Wrapper<?, ?> superseded = _wrapper;
+    _wrapper = UncheckedCast.<Wrapper<?, ?>, Wrapper<V, E>> uncheckedCast(that._wrapper);
+    _args = that._args;
+    return superseded;
+  }
+
   public boolean jumpQueue() {
     return _signatureInfo.jumpQueue();
   }
@@ -43,56 +88,117 @@ class InvocationInfo<V, E extends Throwable> implements MailboxElement {
     return _signatureInfo.patient();
   }
 
-  Invocation<V, E> toInvocation(Collection<? extends InvocationInfo<?, ?>> batchTail, Logger log, TargetClass<?> targetClass, Object target, boolean afterTaskEnabled) {
+  /** @param spareOrNull A cleared invocation to reuse, or null to create one. */
+  Invocation<V, E> toInvocation(Collection<? extends InvocationInfo<?, ?>> batchTail, Logger log, TargetClass<?> targetClass, Object target, boolean afterTaskEnabled, Invocation<?, ?> spareOrNull) {
     int batchSize;
     Object[] args;
     Wrapper<V, E> wrapper;
     if (_signatureInfo.batch()) {
       batchSize = 1 + batchTail.size();
-      args = new Object[_args.length];
-      // Create the arrays and fill in their first elements with this info's args:
-      for (int argIndex = 0; argIndex < _args.length; ++argIndex) {
-        args[argIndex] = Array.newInstance(_signatureInfo.key().parameterType(argIndex), batchSize);
-        Array.set(args[argIndex], 0, _args[argIndex]);
+      Object[][] batchArgs = new Object[batchSize][];
+      batchArgs[0] = _args;
+      int batchIndex = 1;
+      for (InvocationInfo<?, ?> that : batchTail)
+        batchArgs[batchIndex++] = that._args;
+      args = _signatureInfo.batchArgs(batchArgs);
+      if (_signatureInfo.batchScatter()) {
+        wrapper = scatterWrapper(batchWrappers(batchTail));
+      } else {
+        wrapper = batchTail.isEmpty() ? _wrapper : broadcastWrapper(batchWrappers(batchTail));
       }
-      // Now fill in the elements for every remaining info in the batch:
-      Iterator<? extends InvocationInfo<?, ?>> tailIterator = batchTail.iterator();
-      for (int batchIndex = 1; batchIndex < batchSize; ++batchIndex) {
-        InvocationInfo<?, ?> that = tailIterator.next();
-        for (int argIndex = 0; argIndex < _args.length; ++argIndex)
-          Array.set(args[argIndex], batchIndex, that._args[argIndex]);
+    } else {
+      batchSize = 1;
+      args = _args;
+      wrapper = _wrapper;
+    }
+    if (null == spareOrNull) return new Invocation<>(log, _signatureInfo, targetClass, target, args, wrapper, _actor, _nanoTime, batchSize, afterTaskEnabled);
+    return spareOrNull.reuse(log, _signatureInfo, targetClass, target, args, wrapper, _actor, _nanoTime, batchSize, afterTaskEnabled);
+  }
+
+  /** Observe this copies the wrappers, as the infos may be reused before a suspended batch completes. */
+  private Wrapper<?, ?>[] batchWrappers(Collection<? extends InvocationInfo<?, ?>> batchTail) {
+    Wrapper<?, ?>[] wrappers = new Wrapper<?, ?>[1 + batchTail.size()];
+    wrappers[0] = _wrapper;
+    int i = 1;
+    for (InvocationInfo<?, ?> that : batchTail)
+      wrappers[i++] = that._wrapper;
+    return wrappers;
+  }
+
+  /** @param wrappers Non-empty. */
+  private static <V, E extends Throwable> Wrapper<V, E> broadcastWrapper(Wrapper<?, ?>[] wrappers) {
+    Wrapper<V, E> first = UncheckedCast.<Wrapper<?, ?>, Wrapper<V, E>> uncheckedCast(wrappers[0]);
+    Wrapper<?, ?>[] tail = Arrays.copyOfRange(wrappers, 1, wrappers.length);
+    return new Wrapper<V, E>() {
+      public void putCancelled() {
+        first.putCancelled();
+        for (Wrapper<?, ?> w : tail)
+          w.putCancelled();
       }
-      wrapper = batchTail.isEmpty() ? _wrapper : new Wrapper<V, E>() {
-        public void putCancelled() {
-          _wrapper.putCancelled();
-          for (InvocationInfo<?, ?> that : batchTail)
-            that._wrapper.putCancelled();
-        }
 
-        public void putValue(V value) {
-          _wrapper.putValue(value);
-          for (InvocationInfo<?, ?> that : batchTail)
-            UncheckedCast.<InvocationInfo<?, ?>, InvocationInfo<V, ?>> uncheckedCast(that)._wrapper.putValue(value);
-        }
+      public void putValue(V value) {
+        first.putValue(value);
+        for (Wrapper<?, ?> w : tail)
+          UncheckedCast.<Wrapper<?, ?>, Wrapper<V, ?>> uncheckedCast(w).putValue(value);
+      }
 
-        public void putCauseOfInvocationTargetException(E checkedThrowable) {
-          _wrapper.putCauseOfInvocationTargetException(checkedThrowable);
-          for (InvocationInfo<?, ?> that : batchTail)
-            UncheckedCast.<InvocationInfo<?, ?>, InvocationInfo<?, E>> uncheckedCast(that)._wrapper.putCauseOfInvocationTargetException(checkedThrowable);
-        }
+      public void putCauseOfInvocationTargetException(E checkedThrowable) {
+        first.putCauseOfInvocationTargetException(checkedThrowable);
+        for (Wrapper<?, ?> w : tail)
+          UncheckedCast.<Wrapper<?, ?>, Wrapper<?, E>> uncheckedCast(w).putCauseOfInvocationTargetException(checkedThrowable);
+      }
 
-        public void putCauseOfExecutionException(Throwable throwable) {
-          _wrapper.putCauseOfExecutionException(throwable);
-          for (InvocationInfo<?, ?> that : batchTail)
-            that._wrapper.putCauseOfExecutionException(throwable);
+      public void putCauseOfExecutionException(Throwable throwable) {
+        first.putCauseOfExecutionException(throwable);
+        for (Wrapper<?, ?> w : tail)
+          w.putCauseOfExecutionException(throwable);
+      }
+    };
+  }
+
+  /** Gives each wrapper its own element of the value, see {@link com.github.strangefac.strange.Batch#scatter()}. Anything else goes to them all. */
+  private static <V, E extends Throwable> Wrapper<V, E> scatterWrapper(Wrapper<?, ?>[] wrappers) {
+    Wrapper<V, E> all = broadcastWrapper(wrappers);
+    return new Wrapper<V, E>() {
+      public void putCancelled() {
+        all.putCancelled();
+      }
+
+      public void putValue(V value) {
+        int length = value instanceof List ? ((List<?>) value).size() : null != value && value.getClass().isArray() ? Array.getLength(value) : -1;
+        if (wrappers.length != length) {
+          all.putCauseOfExecutionException(new IllegalStateException(String.format("Expected %s results but got %s.", wrappers.length, length < 0 ? value : length)));
+          return;
         }
-      };
-    } else {
-      batchSize = 1;
-      args = _args;
-      wrapper = _wrapper;
+        for (int i = 0; i < length; ++i)
+          putElement(wrappers[i], value instanceof List ? ((List<?>) value).get(i) : Array.get(value, i));
+      }
+
+      public void putCauseOfInvocationTargetException(E checkedThrowable) {
+        all.putCauseOfInvocationTargetException(checkedThrowable);
+      }
+
+      public void putCauseOfExecutionException(Throwable throwable) {
+        all.putCauseOfExecutionException(throwable);
+      }
+    };
+  }
+
+  /** Like {@link Invocation} reports an outcome, except that a non-Syncable element is simply the value. */
+  private static void putElement(Wrapper<?, ?> wrapper, Object element) {
+    Object value = element;
+    if (element instanceof NormalSyncable || element instanceof AbruptSyncable) { // Done, so sync doesn't block.
+      try {
+        value = ((Syncable<?, ?>) element).sync();
+      } catch (RuntimeException | Error t) {
+        wrapper.putCauseOfExecutionException(new InvocationTargetException(t));
+        return;
+      } catch (Throwable t) {
+        UncheckedCast.<Wrapper<?, ?>, Wrapper<?, Throwable>> uncheckedCast(wrapper).putCauseOfInvocationTargetException(t);
+        return;
+      }
     }
-    return new Invocation<>(log, _signatureInfo, targetClass, target, args, wrapper, _actor, _nanoTime, batchSize, afterTaskEnabled);
+    UncheckedCast.<Wrapper<?, ?>, Wrapper<Object, ?>> uncheckedCast(wrapper).putValue(value);
   }
 
   static final String YIELDING_FORMAT = "Yielding instead of {}.";
@@ -1,14 +1,15 @@
 package com.github.strangefac.strange.impl;
 
-import static com.github.strangefac.strange.impl.Invocation.PRIVATE_POST_TASK_SIGNATURE_KEY;
+import java.util.ArrayDeque;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.NoSuchElementException;
 import org.slf4j.Logger;
 import com.github.strangefac.strange.DeadActorException;
 import com.github.strangefac.strange.DwellInfo;
+import com.github.strangefac.strange.JumpQueue;
 import com.github.strangefac.strange.MailboxElement;
 import com.github.strangefac.strange.PrivateActor;
 import com.github.strangefac.strange.SFuture;
@@ -16,106 +17,283 @@ import com.github.strangefac.strange.Wrapper;
 import com.github.strangefac.strange.impl.StrangeImpl.TargetClass;
 import com.github.strangefac.strange.util.TypedArrayList;
 import com.github.strangefac.strange.util.UncheckedCast;
+import gnu.trove.map.hash.THashMap;
 
-class Mailbox {
-  static class Invocations<I extends MailboxElement> extends LinkedList<I> {
-    private static final long serialVersionUID = 1L;
+class Mailbox extends AbstractMailbox {
+  /**
+   * One FIFO lane per priority level, consumed highest first, so that posting at any level is constant time. The levels are currently {@link JumpQueue} and
+   * ordinary. Impatient elements are counted so that {@link #hasImpatient()} needn't scan.
+   * <p>
+   * A reorderable element waits in the ordinary lane, unless one with the same key already does, in which case it waits in that one's sub-queue. Whoever
+   * removes the first must then {@link #removeFollowers(Object, int, Collection) remove its followers}.
+   */
+  static class Invocations<I extends MailboxElement> implements Iterable<I> {
+    private static final int JUMP_QUEUE_LANE = 0, ORDINARY_LANE = 1, LANE_COUNT = 2;
+    private final ArrayDeque<I>[] _lanes = UncheckedCast.<ArrayDeque<?>[], ArrayDeque<I>[]> uncheckedCast(new ArrayDeque<?>[LANE_COUNT]);
+    private final THashMap<Object, ArrayDeque<I>> _followers = new THashMap<>();
+    private int _size = 0, _impatientCount = 0;
+    {
+      for (int i = 0; i < LANE_COUNT; ++i)
+        _lanes[i] = new ArrayDeque<>();
+    }
 
-    void jumpQueue(I info) {
-      for (ListIterator<I> i = listIterator(); i.hasNext();) {
-        if (!i.next().jumpQueue()) {
-          i.previous(); // Rewind to insert before the first non-jump-queue invocation.
-          i.add(info);
-          return;
-        }
+    void add(I element) {
+      add(ORDINARY_LANE, element);
+    }
+
+    /** Unlike {@link #add(MailboxElement)} the element goes before all ordinary elements, but after any jump-queue elements. */
+    void jumpQueue(I element) {
+      add(JUMP_QUEUE_LANE, element);
+    }
+
+    /** Like {@link #add(MailboxElement)}, but may overtake elements with other keys. */
+    void addReorderable(I element, Object key) {
+      ArrayDeque<I> followersOrNull = _followers.get(key);
+      if (null == followersOrNull) {
+        _followers.put(key, new ArrayDeque<>());
+        add(element);
+      } else {
+        followersOrNull.add(element);
+        added(element);
       }
-      add(info); // They were all jump-queue invocations, so append.
     }
 
-    private boolean hasImpatient() { // XXX: It would be more efficient to keep track of the number of patient items.
-      if (isEmpty()) return false;
-      if (!getFirst().patient()) return true;
-      // Neither of the common cases fired, so now we iterate starting with index 1 (which needn't exist):
-      for (Iterator<I> i = listIterator(1); i.hasNext();) {
-        if (!i.next().patient()) {
-          return true;
-        }
+    private void add(int lane, I element) {
+      _lanes[lane].add(element);
+      added(element);
+    }
+
+    private void added(I element) {
+      ++_size;
+      if (!element.patient()) ++_impatientCount;
+    }
+
+    private void removed(I element) {
+      --_size;
+      if (!element.patient()) --_impatientCount;
+    }
+
+    /**
+     * Must be called after removing a reorderable element. Any followers beyond the max go back to the front of the ordinary lane, first one first.
+     * 
+     * @param key As passed to {@link #addReorderable(MailboxElement, Object)}.
+     */
+    void removeFollowers(Object key, int max, Collection<? super I> into) {
+      ArrayDeque<I> followers = _followers.remove(key);
+      for (I element; into.size() < max && null != (element = followers.pollFirst());) {
+        into.add(element);
+        removed(element);
+      }
+      I nextOrNull = followers.pollFirst();
+      if (null != nextOrNull) {
+        _lanes[ORDINARY_LANE].addFirst(nextOrNull);
+        _followers.put(key, followers);
+      }
+    }
+
+    private ArrayDeque<I> firstLaneOrNull() {
+      for (ArrayDeque<I> lane : _lanes) {
+        if (!lane.isEmpty()) return lane;
       }
-      return false; // All items are patient.
+      return null;
+    }
+
+    I removeFirst() throws NoSuchElementException {
+      ArrayDeque<I> laneOrNull = firstLaneOrNull();
+      if (null == laneOrNull) throw new NoSuchElementException();
+      I element = laneOrNull.removeFirst();
+      removed(element);
+      return element;
+    }
+
+    I peekOrNull() {
+      ArrayDeque<I> laneOrNull = firstLaneOrNull();
+      return null == laneOrNull ? null : laneOrNull.peekFirst();
+    }
+
+    boolean isEmpty() {
+      return 0 == _size;
+    }
+
+    int size() {
+      return _size;
+    }
+
+    int jumpQueueCount() {
+      return _lanes[JUMP_QUEUE_LANE].size();
+    }
+
+    int impatientCount() {
+      return _impatientCount;
+    }
+
+    boolean hasImpatient() {
+      return 0 != _impatientCount;
+    }
+
+    /** Iterates over the lanes in consumption order, then the followers. */
+    public Iterator<I> iterator() {
+      return new Iterator<I>() {
+        private int _lane = 0;
+        private Iterator<I> _current = _lanes[0].iterator();
+        private Iterator<ArrayDeque<I>> _followersOrNull = null;
+
+        public boolean hasNext() {
+          while (!_current.hasNext() && _lane + 1 < LANE_COUNT)
+            _current = _lanes[++_lane].iterator();
+          if (!_current.hasNext() && null == _followersOrNull) _followersOrNull = _followers.values().iterator();
+          while (!_current.hasNext() && _followersOrNull.hasNext())
+            _current = _followersOrNull.next().iterator();
+          return _current.hasNext();
+        }
+
+        public I next() {
+          hasNext(); // Advance to the next non-empty lane if necessary.
+          return _current.next();
+        }
+      };
     }
   }
 
   static final String DEAD_ACTOR_MESSAGE = "Dead actor.";
-  private final boolean _afterTaskEnabled;
+  /** Enough to absorb a burst of posts without allocating, but not so many that an idle mailbox holds on to much memory. */
+  private static final int SPARE_INFO_CAPACITY = 64;
   private Invocations<InvocationInfo<?, ?>> _invocationsOrNull;
+  /** The waiting {@link com.github.strangefac.strange.Conflate} invocations by conflation key, so that replacing one doesn't cost a scan. */
+  private final THashMap<Object, InvocationInfo<?, ?>> _conflatable = new THashMap<>();
   private InvocationLite _loadedOrNull;
+  // The envelopes behind the loaded invocation, recycled on unload along with the invocation itself:
+  private InvocationInfo<?, ?> _loadedInfoOrNull;
+  private List<InvocationInfo<?, ?>> _loadedBatchTail;
+  private final InvocationInfo<?, ?>[] _spareInfos = new InvocationInfo<?, ?>[SPARE_INFO_CAPACITY];
+  private int _spareInfoCount;
+  private Invocation<?, ?> _spareInvocationOrNull;
 
   Mailbox(boolean afterTaskEnabled) {
-    _afterTaskEnabled = afterTaskEnabled;
+    super(afterTaskEnabled);
     synchronized (this) {
       _invocationsOrNull = new Invocations<>();
       _loadedOrNull = null;
+      _loadedInfoOrNull = null;
+      _loadedBatchTail = Collections.emptyList();
+      _spareInfoCount = 0;
+      _spareInvocationOrNull = null;
     }
   }
 
+  // Must be called from a synchronized method/block.
+  InvocationInfo<?, ?> spareInfoOrNull() {
+    if (0 == _spareInfoCount) return null;
+    InvocationInfo<?, ?> info = _spareInfos[--_spareInfoCount];
+    _spareInfos[_spareInfoCount] = null;
+    return info;
+  }
+
+  // Must be called from a synchronized method/block.
+  Invocation<?, ?> spareInvocationOrNull() {
+    Invocation<?, ?> invocationOrNull = _spareInvocationOrNull;
+    _spareInvocationOrNull = null;
+    return invocationOrNull;
+  }
+
+  // Must be called from a synchronized method/block.
+  private void recycle(InvocationInfo<?, ?> info) {
+    info.clear();
+    if (_spareInfoCount < SPARE_INFO_CAPACITY) _spareInfos[_spareInfoCount++] = info;
+  }
+
   synchronized void kill(Logger log) {
     if (null == _invocationsOrNull) return; // Already killed.
     if (null != _loadedOrNull) _loadedOrNull.cancelWithInterrupt(true); // XXX: And set to null?
     for (InvocationInfo<?, ?> i : _invocationsOrNull)
       i.reject(log);
     _invocationsOrNull = null;
+    _conflatable.clear();
   }
 
-  /** @return The wrapper, or null if this is {@link PrivateActor#post(com.github.strangefac.strange.Task, Wrapper)}. */
-  synchronized <V, E extends Throwable> SFuture<V, E> add(PrivateActor actor, SignatureInfo signatureInfo, Object... args) throws DeadActorException {
-    if (null == _invocationsOrNull) throw new DeadActorException();
-    if (null != _loadedOrNull && !signatureInfo.patient()) {
-      _loadedOrNull.cancelWithInterrupt(false); // Could already be "done", or could get called multiple times if it sticks around.
-    }
-    Wrapper<V, E> wrapper;
-    SFuture<V, E> futureOrNull;
-    if (PRIVATE_POST_TASK_SIGNATURE_KEY.equals(signatureInfo.key())) {
-      wrapper = UncheckedCast.uncheckedCast(args[1]);
-      futureOrNull = null;
-    } else {
-      WrapperImpl<V, E> wrapperImpl = new WrapperImpl<>();
-      wrapper = wrapperImpl;
-      futureOrNull = wrapperImpl;
-    }
-    InvocationInfo<V, E> info = new InvocationInfo<>(wrapper, actor, signatureInfo, args);
-    if (signatureInfo.jumpQueue())
-      _invocationsOrNull.jumpQueue(info);
-    else
-      _invocationsOrNull.add(info);
-    return futureOrNull;
+  <V, E extends Throwable> SFuture<V, E> add(PrivateActor actor, SignatureInfo signatureInfo, Object... args) throws DeadActorException {
+    SFuture<V, E> future;
+    Wrapper<?, ?> supersededOrNull = null;
+    synchronized (this) {
+      if (null == _invocationsOrNull) throw new DeadActorException();
+      if (null != _loadedOrNull && !signatureInfo.patient()) {
+        _loadedOrNull.cancelWithInterrupt(false); // Could already be "done", or could get called multiple times if it sticks around.
+      }
+      InvocationInfo<V, E> info = newInvocationInfo(actor, signatureInfo, args);
+      future = futureOrNull(info);
+      InvocationInfo<?, ?> pendingOrNull = signatureInfo.conflate() ? _conflatable.putIfAbsent(info.conflationKey(), info) : null;
+      if (null != pendingOrNull) {
+        supersededOrNull = pendingOrNull.supersede(info);
+        recycle(info);
+      } else if (signatureInfo.jumpQueue()) {
+        _invocationsOrNull.jumpQueue(info);
+      } else if (signatureInfo.batch() && signatureInfo.batchReorder()) {
+        _invocationsOrNull.addReorderable(info, signatureInfo.key());
+      } else {
+        _invocationsOrNull.add(info);
+      }
+    }
+    if (null != supersededOrNull) supersededOrNull.putCancelled(); // Not under the lock, as it runs the done-callbacks of the superseded future.
+    return future;
   }
 
   /** @param maxBatchSize Must be at least 1. */
   synchronized InvocationLite load(Logger log, TargetClass<?> targetClass, Object target, int maxBatchSize) throws DeadActorException, IllegalStateException {
     if (null == _invocationsOrNull) throw new DeadActorException();
     if (null != _loadedOrNull) throw new IllegalStateException();
+    if (_invocationsOrNull.isEmpty()) return null;
+    InvocationInfo<?, ?> lingeringOrNull = lingeringOrNull();
+    if (null != lingeringOrNull && 0 != lingerNanos(lingeringOrNull)) return null; // The drain will come back.
     InvocationInfo<?, ?> info = _invocationsOrNull.removeFirst();
     // We do the bulk of the batching here as it's more efficient this way and doesn't break the mailbox size:
     List<InvocationInfo<?, ?>> batchTail;
     SignatureInfo signatureInfo = info.signatureInfo();
     if (signatureInfo.batch()) {
       batchTail = new TypedArrayList<>(InvocationInfo.class);
-      while (!_invocationsOrNull.isEmpty() && signatureInfo.key().equals(_invocationsOrNull.getFirst().signatureInfo().key()) && (1 + batchTail.size()) < maxBatchSize)
+      maxBatchSize = Math.min(maxBatchSize, signatureInfo.batchMaxSize());
+      if (signatureInfo.batchReorder() && !info.jumpQueue()) _invocationsOrNull.removeFollowers(signatureInfo.key(), maxBatchSize - 1, batchTail);
+      while (!_invocationsOrNull.isEmpty() && signatureInfo.key().equals(_invocationsOrNull.peekOrNull().signatureInfo().key()) && (1 + batchTail.size()) < maxBatchSize)
         batchTail.add(_invocationsOrNull.removeFirst());
     } else {
       batchTail = Collections.emptyList();
     }
+    forgetConflatable(info);
+    for (InvocationInfo<?, ?> i : batchTail)
+      forgetConflatable(i);
     // Observe we are checking yield after batch, so that a batch is considered as a whole:
-    if (signatureInfo.yield() && _invocationsOrNull.hasImpatient())
-      _loadedOrNull = info.toYieldInvocation(batchTail, log);
-    else
-      _loadedOrNull = info.toInvocation(batchTail, log, targetClass, target, _afterTaskEnabled);
+    _loadedOrNull = toInvocationLite(info, batchTail, signatureInfo.yield() && _invocationsOrNull.hasImpatient(), log, targetClass, target);
+    _loadedInfoOrNull = info;
+    _loadedBatchTail = batchTail;
     return _loadedOrNull;
   }
 
+  // Must be called from a synchronized method/block.
+  private void forgetConflatable(InvocationInfo<?, ?> info) {
+    if (info.signatureInfo().conflate()) _conflatable.remove(info.conflationKey());
+  }
+
+  synchronized InvocationInfo<?, ?> lingeringOrNull() {
+    if (null == _invocationsOrNull || 0 != _invocationsOrNull.jumpQueueCount()) return null;
+    InvocationInfo<?, ?> first = _invocationsOrNull.peekOrNull();
+    if (!lingers(first) || _invocationsOrNull.size() >= first.signatureInfo().batchMaxSize()) return null;
+    for (InvocationInfo<?, ?> info : _invocationsOrNull) {
+      if (!first.signatureInfo().key().equals(info.signatureInfo().key())) return null;
+    }
+    return first;
+  }
+
   synchronized void unload() throws IllegalStateException {
     if (null == _loadedOrNull) throw new IllegalStateException();
+    // Once finished the invocation has completed its wrapper or handed it to a suspension, so nothing refers to the envelopes any more:
+    if (_loadedOrNull instanceof Invocation && ((Invocation<?, ?>) _loadedOrNull).clearIfFinished()) {
+      _spareInvocationOrNull = (Invocation<?, ?>) _loadedOrNull;
+      recycle(_loadedInfoOrNull);
+      for (InvocationInfo<?, ?> i : _loadedBatchTail)
+        recycle(i);
+    }
     _loadedOrNull = null;
+    _loadedInfoOrNull = null;
+    _loadedBatchTail = Collections.emptyList();
   }
 
   synchronized int size() throws IllegalStateException {
@@ -123,40 +301,15 @@ class Mailbox {
     return _invocationsOrNull.size();
   }
 
-  private static class DwellInfoImpl implements DwellInfo {
-    private final long _invocationNanoTime;
-    private final int _mailboxSize;
-
-    private DwellInfoImpl(long invocationNanoTime, int mailboxSize) {
-      _invocationNanoTime = invocationNanoTime;
-      _mailboxSize = mailboxSize;
-    }
-
-    public long dwellNanos(long systemNanoTime) {
-      return systemNanoTime - _invocationNanoTime;
-    }
-
-    public int mailboxSize() {
-      return _mailboxSize;
-    }
+  synchronized boolean isEmpty() {
+    return null == _invocationsOrNull || _invocationsOrNull.isEmpty();
   }
 
-  /** Nothing is being executed and the mailbox is empty. */
-  private static final DwellInfo TRIVIAL_DWELL_INFO = new DwellInfo() {
-    public long dwellNanos(long systemNanoTime) {
-      return 0;
-    }
-
-    public int mailboxSize() {
-      return 0;
-    }
-  };
-
   synchronized DwellInfo getDwellInfo() {
     if (null == _invocationsOrNull) return TRIVIAL_DWELL_INFO; // Legit, it's just permanent now.
-    int mailboxSize = _invocationsOrNull.size();
-    if (null != _loadedOrNull && !_loadedOrNull.slow()) return new DwellInfoImpl(_loadedOrNull.nanoTime(), mailboxSize);
-    if (0 != mailboxSize) return new DwellInfoImpl(_invocationsOrNull.getFirst().nanoTime(), mailboxSize);
+    int mailboxSize = _invocationsOrNull.size(), jumpQueueCount = _invocationsOrNull.jumpQueueCount(), impatientCount = _invocationsOrNull.impatientCount();
+    if (null != _loadedOrNull && !_loadedOrNull.slow()) return dwellInfo(_loadedOrNull.nanoTime(), mailboxSize, jumpQueueCount, impatientCount);
+    if (0 != mailboxSize) return dwellInfo(_invocationsOrNull.peekOrNull().nanoTime(), mailboxSize, jumpQueueCount, impatientCount);
     return TRIVIAL_DWELL_INFO;
   }
 }
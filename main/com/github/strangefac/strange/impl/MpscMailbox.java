@@ -0,0 +1,216 @@
+package com.github.strangefac.strange.impl;
+
+import static com.github.strangefac.strange.impl.Mailbox.DEAD_ACTOR_MESSAGE;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import com.github.strangefac.strange.DeadActorException;
+import com.github.strangefac.strange.DwellInfo;
+import com.github.strangefac.strange.LockFreeMailbox;
+import com.github.strangefac.strange.MailboxElement;
+import com.github.strangefac.strange.PrivateActor;
+import com.github.strangefac.strange.SFuture;
+import com.github.strangefac.strange.impl.StrangeImpl.TargetClass;
+import com.github.strangefac.strange.util.TypedArrayList;
+
+/**
+ * The {@link LockFreeMailbox} impl. Posting threads never take a lock, they append to a lane with a single atomic swap. The consumer side (load/unload) and
+ * kill are serialised by the monitor, which is uncontended in practice as there is at most one drain per actor and kill is rare.
+ */
+class MpscMailbox extends AbstractMailbox {
+  /** Multi-producer single-consumer linked queue after Vyukov. Any thread may {@link #offer(Object)}, the other methods are for the consumer only. */
+  static class Lane<I extends MailboxElement> {
+    private static class Node<I> {
+      private I _itemOrNull;
+      private volatile Node<I> _next;
+
+      private Node(I itemOrNull) {
+        _itemOrNull = itemOrNull;
+      }
+    }
+
+    /** Dummy node whose successor is the first item. Only the consumer writes this, but it's volatile for the benefit of {@link #headHintOrNull()}. */
+    private volatile Node<I> _head;
+    private final AtomicReference<Node<I>> _tail;
+
+    Lane() {
+      Node<I> stub = new Node<>(null);
+      _head = stub;
+      _tail = new AtomicReference<>(stub);
+    }
+
+    void offer(I item) {
+      Node<I> node = new Node<>(item);
+      _tail.getAndSet(node)._next = node; // Between the swap and the link the node (and any after it) is invisible to the consumer.
+    }
+
+    /** Waits out the window between a producer's swap and link, so that null really means empty. */
+    private Node<I> firstOrNull() {
+      Node<I> head = _head, next = head._next;
+      if (null == next && head != _tail.get()) {
+        do {
+          Thread.yield(); // The producer is between 2 consecutive instructions, so this won't take long.
+        } while (null == (next = head._next));
+      }
+      return next;
+    }
+
+    I peekOrNull() {
+      Node<I> firstOrNull = firstOrNull();
+      return null == firstOrNull ? null : firstOrNull._itemOrNull;
+    }
+
+    I pollOrNull() {
+      Node<I> firstOrNull = firstOrNull();
+      if (null == firstOrNull) return null;
+      I item = firstOrNull._itemOrNull;
+      firstOrNull._itemOrNull = null; // It's the new dummy, which must not keep the item reachable.
+      _head = firstOrNull;
+      return item;
+    }
+
+    /** @return Whether every item satisfies the predicate, not counting any that are mid-offer. */
+    boolean allMatch(Predicate<? super I> predicate) {
+      for (Node<I> node = firstOrNull(); null != node; node = node._next) {
+        if (!predicate.test(node._itemOrNull)) return false;
+      }
+      return true;
+    }
+
+    /** Safe to call from any thread, but only for monitoring as the result may be stale or spuriously null. */
+    I headHintOrNull() {
+      Node<I> nextOrNull = _head._next;
+      return null == nextOrNull ? null : nextOrNull._itemOrNull;
+    }
+  }
+
+  // Jump-queue invocations are always taken before ordinary ones, which has the same effect as inserting them before the first ordinary one:
+  private final Lane<InvocationInfo<?, ?>> _jumpQueueLane = new Lane<>(), _ordinaryLane = new Lane<>();
+  /** Each is incremented before the offer, so may briefly count an invocation that the consumer can't yet see but never goes negative. */
+  private final AtomicInteger _size = new AtomicInteger(), _jumpQueueCount = new AtomicInteger(), _impatientCount = new AtomicInteger();
+  private volatile boolean _dead;
+  private Logger _killLog; // Published by _dead.
+  private volatile InvocationLite _loadedOrNull;
+
+  MpscMailbox(boolean afterTaskEnabled) {
+    super(afterTaskEnabled);
+    _dead = false;
+    _loadedOrNull = null;
+  }
+
+  synchronized void kill(Logger log) {
+    if (_dead) return; // Already killed.
+    _killLog = log;
+    _dead = true;
+    if (null != _loadedOrNull) _loadedOrNull.cancelWithInterrupt(true);
+    rejectAll();
+  }
+
+  // Must be called from a synchronized method/block.
+  private void rejectAll() {
+    for (InvocationInfo<?, ?> i; null != (i = pollOrNull());)
+      i.reject(_killLog);
+  }
+
+  <V, E extends Throwable> SFuture<V, E> add(PrivateActor actor, SignatureInfo signatureInfo, Object... args) throws DeadActorException {
+    if (_dead) throw new DeadActorException();
+    InvocationInfo<V, E> info = newInvocationInfo(actor, signatureInfo, args);
+    _size.incrementAndGet();
+    if (signatureInfo.jumpQueue()) _jumpQueueCount.incrementAndGet();
+    if (!signatureInfo.patient()) _impatientCount.incrementAndGet();
+    (signatureInfo.jumpQueue() ? _jumpQueueLane : _ordinaryLane).offer(info);
+    if (!signatureInfo.patient()) {
+      InvocationLite loadedOrNull = _loadedOrNull; // Observe we read this after the offer, see load.
+      if (null != loadedOrNull) loadedOrNull.cancelWithInterrupt(false); // Could already be "done", or could get called multiple times if it sticks around.
+    }
+    if (_dead) {
+      synchronized (this) {
+        rejectAll(); // We raced with kill, which may not have seen our offer.
+      }
+    }
+    return futureOrNull(info);
+  }
+
+  private InvocationInfo<?, ?> peekOrNull() {
+    InvocationInfo<?, ?> infoOrNull = _jumpQueueLane.peekOrNull();
+    return null != infoOrNull ? infoOrNull : _ordinaryLane.peekOrNull();
+  }
+
+  private InvocationInfo<?, ?> pollOrNull() {
+    InvocationInfo<?, ?> infoOrNull = _jumpQueueLane.pollOrNull();
+    return null != infoOrNull ? infoOrNull : _ordinaryLane.pollOrNull();
+  }
+
+  private void removed(InvocationInfo<?, ?> info) {
+    if (info.jumpQueue()) _jumpQueueCount.decrementAndGet();
+    if (!info.patient()) _impatientCount.decrementAndGet();
+  }
+
+  private boolean hasImpatient() {
+    return 0 != _impatientCount.get(); // May count an invocation that is mid-offer, which is fine as it's about to be visible.
+  }
+
+  synchronized InvocationLite load(Logger log, TargetClass<?> targetClass, Object target, int maxBatchSize) throws DeadActorException, IllegalStateException {
+    if (_dead) throw new DeadActorException();
+    if (null != _loadedOrNull) throw new IllegalStateException();
+    InvocationInfo<?, ?> lingeringOrNull = lingeringOrNull();
+    if (null != lingeringOrNull && 0 != lingerNanos(lingeringOrNull)) return null; // The drain will come back.
+    InvocationInfo<?, ?> info = pollOrNull();
+    if (null == info) return null;
+    List<InvocationInfo<?, ?>> batchTail;
+    SignatureInfo signatureInfo = info.signatureInfo();
+    if (signatureInfo.batch()) {
+      batchTail = new TypedArrayList<>(InvocationInfo.class);
+      maxBatchSize = Math.min(maxBatchSize, signatureInfo.batchMaxSize());
+      for (InvocationInfo<?, ?> next; (1 + batchTail.size()) < maxBatchSize && null != (next = peekOrNull()) && signatureInfo.key().equals(next.signatureInfo().key());)
+        batchTail.add(pollOrNull());
+    } else {
+      batchTail = Collections.emptyList();
+    }
+    _size.addAndGet(-1 - batchTail.size());
+    removed(info);
+    for (InvocationInfo<?, ?> i : batchTail)
+      removed(i);
+    boolean yield = signatureInfo.yield() && hasImpatient();
+    InvocationLite loaded = toInvocationLite(info, batchTail, yield, log, targetClass, target);
+    _loadedOrNull = loaded;
+    // An impatient post that landed after the above check may have missed the loaded invocation, so check again now it's visible:
+    if (signatureInfo.yield() && !yield && hasImpatient()) loaded.cancelWithInterrupt(false);
+    return loaded;
+  }
+
+  synchronized InvocationInfo<?, ?> lingeringOrNull() {
+    if (_dead || null != _jumpQueueLane.peekOrNull()) return null;
+    InvocationInfo<?, ?> first = _ordinaryLane.peekOrNull();
+    if (!lingers(first) || _size.get() >= first.signatureInfo().batchMaxSize()) return null;
+    return _ordinaryLane.allMatch(info -> first.signatureInfo().key().equals(info.signatureInfo().key())) ? first : null;
+  }
+
+  synchronized void unload() throws IllegalStateException {
+    if (null == _loadedOrNull) throw new IllegalStateException();
+    _loadedOrNull = null;
+  }
+
+  int size() throws IllegalStateException {
+    if (_dead) throw new IllegalStateException(DEAD_ACTOR_MESSAGE);
+    return _size.get();
+  }
+
+  synchronized boolean isEmpty() {
+    return _dead || null == peekOrNull(); // Unlike the size, this waits out any producer mid-offer.
+  }
+
+  DwellInfo getDwellInfo() {
+    if (_dead) return TRIVIAL_DWELL_INFO; // Legit, it's just permanent now.
+    int mailboxSize = _size.get(), jumpQueueCount = _jumpQueueCount.get(), impatientCount = _impatientCount.get(); // Not a consistent snapshot.
+    InvocationLite loadedOrNull = _loadedOrNull;
+    if (null != loadedOrNull && !loadedOrNull.slow()) return dwellInfo(loadedOrNull.nanoTime(), mailboxSize, jumpQueueCount, impatientCount);
+    InvocationInfo<?, ?> firstOrNull = _jumpQueueLane.headHintOrNull();
+    if (null == firstOrNull) firstOrNull = _ordinaryLane.headHintOrNull();
+    if (null != firstOrNull) return dwellInfo(firstOrNull.nanoTime(), mailboxSize, jumpQueueCount, impatientCount);
+    return TRIVIAL_DWELL_INFO;
+  }
+}
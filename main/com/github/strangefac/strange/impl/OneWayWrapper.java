@@ -0,0 +1,44 @@
+package com.github.strangefac.strange.impl;
+
+import static com.github.strangefac.strange.impl.Invocation.ONE_WAY_FAILURE_FORMAT;
+import java.lang.reflect.InvocationTargetException;
+import org.slf4j.Logger;
+import com.github.strangefac.strange.OneWay;
+import com.github.strangefac.strange.Wrapper;
+
+/**
+ * The wrapper of a {@link OneWay} invocation, whose outcome nobody can retrieve. The shared {@link #ONE_WAY_WRAPPER} discards it, as {@link Invocation} has
+ * already logged any failure of the call. The done block of a one-way suspension gets an instance that logs, as its failures don't all pass through there.
+ */
+class OneWayWrapper implements Wrapper<Object, Throwable> {
+  static final OneWayWrapper ONE_WAY_WRAPPER = new OneWayWrapper(null, null);
+
+  private final Logger _logOrNull;
+  private final SignatureInfo _signatureInfo;
+
+  /** @param logOrNull Where to log failures, or null to discard them. */
+  OneWayWrapper(Logger logOrNull, SignatureInfo signatureInfo) {
+    _logOrNull = logOrNull;
+    _signatureInfo = signatureInfo;
+  }
+
+  public void putCancelled() {
+    // Do nothing.
+  }
+
+  public void putValue(Object value) {
+    // Do nothing.
+  }
+
+  public void putCauseOfInvocationTargetException(Throwable checkedThrowable) {
+    log(checkedThrowable);
+  }
+
+  public void putCauseOfExecutionException(Throwable throwable) {
+    log(throwable instanceof InvocationTargetException ? throwable.getCause() : throwable); // Otherwise e.g. DeadActorException.
+  }
+
+  private void log(Throwable t) {
+    if (null != _logOrNull) _logOrNull.error(ONE_WAY_FAILURE_FORMAT, _signatureInfo, t);
+  }
+}
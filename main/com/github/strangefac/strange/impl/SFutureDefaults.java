@@ -0,0 +1,165 @@
+package com.github.strangefac.strange.impl;
+
+import static com.github.strangefac.strange.util.StrangeUtils.notNull;
+import static com.github.strangefac.strange.util.StrangeUtils.uninterruptibly;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import com.github.strangefac.strange.Actor;
+import com.github.strangefac.strange.Continuation;
+import com.github.strangefac.strange.Delay;
+import com.github.strangefac.strange.Delay.TaskControl;
+import com.github.strangefac.strange.OpenFuture;
+import com.github.strangefac.strange.PrivateActor;
+import com.github.strangefac.strange.SFuture;
+import com.github.strangefac.strange.Task;
+
+/**
+ * The default methods of {@link SFuture}, which {@link SFutureImpl} only overrides where it can do better. They build on
+ * {@link #runAfterDone(SFuture, Runnable)}, so they need no thread for an {@link SFutureImpl}. Public only so that the interface can call them.
+ */
+public class SFutureDefaults {
+  /** Lets the pool make up for the thread that waits, see {@link ForkJoinPool#managedBlock(ForkJoinPool.ManagedBlocker)}. */
+  private static class Waiter implements ForkJoinPool.ManagedBlocker {
+    private final Future<?> _source;
+
+    private Waiter(Future<?> source) {
+      _source = source;
+    }
+
+    public boolean block() throws InterruptedException {
+      try {
+        _source.get();
+      } catch (CancellationException | ExecutionException e) {
+        // Done either way.
+      }
+      return true;
+    }
+
+    public boolean isReleasable() {
+      return _source.isDone();
+    }
+  }
+
+  /**
+   * Runs the given post once the source is done. An {@link SFutureImpl} needs no thread for this, but a foreign future has no completion hook, so it costs a
+   * thread of the common pool for as long as it's pending. That thread is a managed blocker, so the pool adds a spare meanwhile rather than starving its other
+   * users, but it's still one thread per pending foreign future.
+   */
+  static void runAfterDone(SFuture<?, ?> source, Runnable post) {
+    if (source instanceof SFutureImpl) {
+      ((SFutureImpl<?, ?>) source).runAfterDone(post);
+    } else if (source.isDone()) {
+      post.run();
+    } else {
+      ForkJoinPool.commonPool().execute(() -> {
+        uninterruptibly(() -> {
+          ForkJoinPool.managedBlock(new Waiter(source));
+          return null;
+        });
+        post.run();
+      });
+    }
+  }
+
+  public static <V> CompletableFuture<V> toCompletableFuture(SFuture<V, ?> source) {
+    CompletableFuture<V> future = new CompletableFuture<>();
+    runAfterDone(source, () -> {
+      try {
+        future.complete(source.assertDoneAndGetUninterruptibly());
+      } catch (CancellationException e) {
+        future.cancel(false);
+      } catch (ExecutionException e) {
+        Throwable t = e.getCause();
+        future.completeExceptionally(t instanceof InvocationTargetException ? t.getCause() : t);
+      }
+    });
+    return future;
+  }
+
+  /** Passes the value of the done source to the consumer, or puts its abrupt outcome into the future. */
+  private static <V> void ifNormalElsePut(SFuture<? extends V, ?> done, OpenFuture<?, ?> future, Consumer<? super V> consumer) {
+    V value;
+    try {
+      value = done.assertDoneAndGetUninterruptibly();
+    } catch (CancellationException e) {
+      future.putCancelled();
+      return;
+    } catch (ExecutionException e) {
+      future.putCauseOfExecutionException(e.getCause()); // Still wrapped in InvocationTargetException if applicable.
+      return;
+    }
+    consumer.accept(value);
+  }
+
+  private static <V> void putOutcome(SFuture<? extends V, ?> done, OpenFuture<V, ?> future) {
+    ifNormalElsePut(done, future, future::putValue);
+  }
+
+  public static <V, W, E extends Throwable> SFuture<W, E> map(SFuture<V, E> source, Function<? super V, ? extends W> function) {
+    SFutureImpl<W, E> future = new SFutureImpl<>();
+    runAfterDone(source, () -> ifNormalElsePut(source, future, value -> {
+      W result;
+      try {
+        result = function.apply(value);
+      } catch (Throwable t) {
+        future.putCauseOfExecutionException(new InvocationTargetException(t)); // So that sync throws it as is.
+        return;
+      }
+      future.putValue(result);
+    }));
+    return future;
+  }
+
+  public static <V, W, E extends Throwable> SFuture<W, E> flatMap(SFuture<V, E> source, Function<? super V, ? extends SFuture<? extends W, ? extends E>> function) {
+    SFutureImpl<W, E> future = new SFutureImpl<>();
+    runAfterDone(source, () -> ifNormalElsePut(source, future, value -> {
+      SFuture<? extends W, ? extends E> next;
+      try {
+        next = notNull("The function result", function.apply(value));
+      } catch (Throwable t) {
+        future.putCauseOfExecutionException(new InvocationTargetException(t));
+        return;
+      }
+      runAfterDone(next, () -> putOutcome(next, future));
+    }));
+    return future;
+  }
+
+  public static <V, E extends Throwable, W, F extends Throwable> SFuture<W, F> thenPostTo(SFuture<V, E> source, Actor actor, Continuation<? super SFuture<V, E>, ? extends W, ? extends F> continuation) {
+    WrapperImpl<W, F> wrapper = new WrapperImpl<>();
+    Task<W, F> task = () -> continuation.run(source);
+    source.postAfterDone((PrivateActor) actor, task, wrapper);
+    return wrapper;
+  }
+
+  public static <V, E extends Throwable> SFuture<V, E> orTimeout(SFuture<V, E> source, Delay delay, double seconds) {
+    SFutureImpl<V, E> future = new SFutureImpl<>();
+    TaskControl control = delay.after(seconds, () -> {
+      try {
+        future.putCauseOfExecutionException(new TimeoutException());
+      } catch (IllegalStateException e) {
+        // The source was done in time after all.
+      }
+    });
+    runAfterDone(source, () -> {
+      control.cancelOrAllow();
+      try {
+        putOutcome(source, future);
+      } catch (IllegalStateException e) {
+        // Too late.
+      }
+    });
+    return future;
+  }
+
+  private SFutureDefaults() {
+    // No.
+  }
+}
@@ -5,131 +5,124 @@ import static com.github.strangefac.strange.function.NullConsumer.NULL_CONSUMER;
 import static com.github.strangefac.strange.impl.Mailbox.DEAD_ACTOR_MESSAGE;
 import static com.github.strangefac.strange.util.StrangeUtils.uninterruptibly;
 import java.lang.reflect.InvocationTargetException;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CancellationException;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
 import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import com.github.strangefac.strange.DeadActorException;
+import com.github.strangefac.strange.Delay;
+import com.github.strangefac.strange.Delay.TaskControl;
 import com.github.strangefac.strange.PrivateActor;
 import com.github.strangefac.strange.SFuture;
 import com.github.strangefac.strange.SyncException;
 import com.github.strangefac.strange.Task;
 import com.github.strangefac.strange.Wrapper;
-import com.github.strangefac.strange.util.TypedArrayList;
 import com.github.strangefac.strange.util.UncheckedCast;
 
-/** The user-visible Future. TODO LATER: Reimplement based on {@link CompletableFuture}. */
+/**
+ * The user-visible Future. Lock-free: completion is a CAS of the result field, and done-posts and waiting threads share a Treiber stack that the completing
+ * thread drains.
+ */
 public class SFutureImpl<V, E extends Throwable> implements SFuture<V, E> {
-  private static final Logger LOG = LoggerFactory.getLogger(SFutureImpl.class);
-
   private enum State {
-    NOT_DONE {
-      <V> V assertDoneAndGetUninterruptibly(SFutureImpl<? extends V, ?> synchronizedWrapper) throws IllegalStateException {
-        throw new IllegalStateException("Not yet done!");
-      }
+    NOT_DONE, COMPLETED_NORMALLY, COMPLETED_ABRUPTLY, CANCELLED
+  }
 
-      <V> V get(SFutureImpl<? extends V, ?> synchronizedWrapper) throws CancellationException, InterruptedException, ExecutionException {
-        synchronizedWrapper._notifyEnabled = true;
-        synchronizedWrapper.wait();
-        return synchronizedWrapper._state.get(synchronizedWrapper); // In the spurious wakeup case this simply recurses.
-      }
+  /** The result when it isn't simply a non-null value. */
+  private static class AltResult {
+    private final State _state;
+    private final Throwable _throwableOrNull;
 
-      <V> V get(SFutureImpl<? extends V, ?> synchronizedWrapper, long timeout, TimeUnit unit) throws CancellationException, InterruptedException, ExecutionException, TimeoutException {
-        return getUpToNanos(synchronizedWrapper, unit.toNanos(timeout));
-      }
+    private AltResult(State state, Throwable throwableOrNull) {
+      _state = state;
+      _throwableOrNull = throwableOrNull;
+    }
+  }
 
-      private <V> V getUpToNanos(SFutureImpl<? extends V, ?> synchronizedWrapper, long remainingNanos) throws CancellationException, InterruptedException, ExecutionException, TimeoutException {
-        long lapNanos = System.nanoTime();
-        while (true) {
-          synchronizedWrapper._notifyEnabled = true;
-          TimeUnit.NANOSECONDS.timedWait(synchronizedWrapper, remainingNanos);
-          if (this != synchronizedWrapper._state) return synchronizedWrapper._state.get(synchronizedWrapper);
-          // Still not done, so check for spurious wakeup:
-          long tookNanos = System.nanoTime() - lapNanos;
-          if (tookNanos >= remainingNanos) throw new TimeoutException(); // Don't disable notify, other threads may be waiting.
-          LOG.debug("Absorbing spurious wakeup."); // I don't recall ever seeing this, so debug is fine.
-          remainingNanos -= tookNanos;
-          lapNanos += tookNanos;
-        }
-      }
-    },
-    COMPLETED_NORMALLY {
-      <V> V assertDoneAndGetUninterruptibly(SFutureImpl<? extends V, ?> synchronizedWrapper) {
-        return synchronizedWrapper._value;
-      }
-    },
-    COMPLETED_ABRUPTLY {
-      <V> V assertDoneAndGetUninterruptibly(SFutureImpl<? extends V, ?> synchronizedWrapper) throws ExecutionException {
-        throw new ExecutionException(synchronizedWrapper._throwable);
-      }
-    },
-    CANCELLED {
-      <V> V assertDoneAndGetUninterruptibly(SFutureImpl<? extends V, ?> synchronizedWrapper) throws CancellationException {
-        throw new CancellationException();
-      }
-    };
-    abstract <V> V assertDoneAndGetUninterruptibly(SFutureImpl<? extends V, ?> synchronizedWrapper) throws IllegalStateException, CancellationException, ExecutionException;
-
-    /**
-     * Must be overridden by {@link #NOT_DONE}.
-     * 
-     * @throws InterruptedException Thrown by {@link #NOT_DONE}.
-     */
-    <V> V get(SFutureImpl<? extends V, ?> synchronizedWrapper) throws CancellationException, InterruptedException, ExecutionException {
-      return assertDoneAndGetUninterruptibly(synchronizedWrapper);
+  private static final AltResult NULL_VALUE = new AltResult(State.COMPLETED_NORMALLY, null), CANCELLED = new AltResult(State.CANCELLED, null);
+
+  /** A done-post or a waiting thread. */
+  private static class Node {
+    private final Runnable _postOrNull;
+    private volatile Thread _waiterOrNull;
+    private volatile Node _next;
+
+    private Node(Runnable postOrNull, Thread waiterOrNull) {
+      _postOrNull = postOrNull;
+      _waiterOrNull = waiterOrNull;
     }
 
-    /**
-     * Must be overridden by {@link #NOT_DONE}.
-     * 
-     * @param timeout Used by {@link #NOT_DONE}.
-     * @param unit Used by {@link #NOT_DONE}.
-     * @throws InterruptedException Thrown by {@link #NOT_DONE}.
-     * @throws TimeoutException Thrown by {@link #NOT_DONE}.
-     */
-    <V> V get(SFutureImpl<? extends V, ?> synchronizedWrapper, long timeout, TimeUnit unit) throws CancellationException, InterruptedException, ExecutionException, TimeoutException {
-      return assertDoneAndGetUninterruptibly(synchronizedWrapper);
+    /** @return Whether this is a waiter that gave up, so can be unlinked. */
+    private boolean dead() {
+      return null == _postOrNull && null == _waiterOrNull;
     }
   }
 
+  /** Replaces the stack once all nodes have been processed, after which posts run immediately. */
+  private static final Node DONE = new Node(null, null);
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<SFutureImpl, Object> RESULT = AtomicReferenceFieldUpdater.newUpdater(SFutureImpl.class, Object.class, "_result");
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<SFutureImpl, Node> STACK = AtomicReferenceFieldUpdater.newUpdater(SFutureImpl.class, Node.class, "_stack");
   static final String NOT_ITE_MESSAGE = "Non-InvocationTargetException cause of ExecutionException:";
+  /** Null when not done, otherwise the value or an {@link AltResult}. */
+  private volatile Object _result;
+  /** Null when empty. */
+  private volatile Node _stack;
+
+  /**
+   * Adapts a result from non-actor code, e.g. an async driver, so that an actor can suspend on it with {@link DelegatingSuspension} or
+   * {@link JoinSuspension} and resume on its own mailbox, without any thread waiting for it.
+   * 
+   * @param <E> Must cover the checked throwables the stage may complete with, see {@link SFuture}.
+   */
+  public static <V, E extends Throwable> SFutureImpl<V, E> fromCompletionStage(CompletionStage<? extends V> stage) {
+    SFutureImpl<V, E> future = new SFutureImpl<>();
+    stage.whenComplete((value, throwableOrNull) -> {
+      if (null == throwableOrNull) {
+        future.putValue(value);
+      } else {
+        Throwable t = throwableOrNull instanceof CompletionException && null != throwableOrNull.getCause() ? throwableOrNull.getCause() : throwableOrNull;
+        if (t instanceof CancellationException) {
+          future.putCancelled();
+        } else {
+          future.putCauseOfExecutionException(new InvocationTargetException(t)); // So that sync throws it as is.
+        }
+      }
+    });
+    return future;
+  }
 
-  private static void assertNotDone(State state) throws IllegalStateException {
-    if (State.NOT_DONE != state) throw new IllegalStateException("Already done.");
+  private static State state(Object result) {
+    return null == result ? State.NOT_DONE : result instanceof AltResult ? ((AltResult) result)._state : State.COMPLETED_NORMALLY;
   }
 
-  private State _state;
-  private List<Runnable> _donePostsOrNull;
-  /** Must be set to true before going into wait. Exists for performance only, never set back to false. */
-  private boolean _notifyEnabled;
-  {
-    synchronized (this) {
-      _state = State.NOT_DONE;
-      _donePostsOrNull = Collections.emptyList();
-      _notifyEnabled = false;
-    }
+  private void put(Object result) throws IllegalStateException {
+    if (!tryPut(result)) throw new IllegalStateException("Already done.");
   }
-  private V _value;
-  private Throwable _throwable;
 
-  public synchronized void putCancelled() throws IllegalStateException {
-    assertNotDone(_state);
-    _state = State.CANCELLED;
+  /** @return false if already done. */
+  private boolean tryPut(Object result) {
+    if (!RESULT.compareAndSet(this, null, result)) return false;
     done();
+    return true;
   }
 
-  public synchronized void putValue(V value) throws IllegalStateException {
-    assertNotDone(_state);
-    _value = value;
-    _state = State.COMPLETED_NORMALLY;
-    done();
+  public void putCancelled() throws IllegalStateException {
+    put(CANCELLED);
+  }
+
+  public void putValue(V value) throws IllegalStateException {
+    put(null == value ? NULL_VALUE : value);
   }
 
   public void putCauseOfInvocationTargetException(E checkedThrowable) throws IllegalStateException {
@@ -140,54 +133,161 @@ public class SFutureImpl<V, E extends Throwable> implements SFuture<V, E> {
     putThrowable(throwable);
   }
 
-  private synchronized void putThrowable(Throwable throwable) throws IllegalStateException {
-    assertNotDone(_state);
-    _throwable = throwable;
-    _state = State.COMPLETED_ABRUPTLY;
-    done();
+  private void putThrowable(Throwable throwable) throws IllegalStateException {
+    put(new AltResult(State.COMPLETED_ABRUPTLY, throwable));
   }
 
   public <W, F extends Throwable> void postAfterDone(PrivateActor actor, Task<? extends W, ? extends F> taskImpl, Wrapper<W, F> wrapper) {
     runAfterDone(() -> DONE_SUSPENDABLE.postAfterDone(actor, taskImpl, wrapper));
   }
 
-  private synchronized void runAfterDone(Runnable post) {
-    if (null != _donePostsOrNull) {
-      if (_donePostsOrNull.isEmpty()) { // It's unmodifiable.
-        _donePostsOrNull = new TypedArrayList<>(Runnable.class, 1); // Only big enough for the first post, too aggressive?
+  /** @return false if the stack is already {@link #DONE}. */
+  private boolean push(Node node) {
+    while (true) {
+      Node head = _stack;
+      if (DONE == head) return false;
+      node._next = head;
+      if (STACK.compareAndSet(this, head, node)) return true;
+    }
+  }
+
+  void runAfterDone(Runnable post) {
+    if (!push(new Node(post, null))) post.run();
+  }
+
+  /**
+   * Posts added while this runs are picked up by the next pass, so that all posts run in the order they were added. The links are left alone, as
+   * {@link #unlinkDeadWaiters()} may still be traversing them.
+   */
+  private void done() {
+    while (true) {
+      Node head = STACK.getAndSet(this, null);
+      if (null == head) {
+        if (STACK.compareAndSet(this, null, DONE)) break; // Any further posts will be executed immediately.
+        continue;
       }
-      _donePostsOrNull.add(post);
+      if (null == head._next) { // Typical, and needs no array.
+        process(head);
+        continue;
+      }
+      List<Node> nodes = new ArrayList<>(); // One traversal, as a concurrent unlink may change the count.
+      for (Node node = head; null != node; node = node._next)
+        nodes.add(node);
+      for (int i = nodes.size() - 1; i >= 0; --i)
+        process(nodes.get(i));
+    }
+  }
+
+  private static void process(Node node) {
+    if (null != node._postOrNull) {
+      node._postOrNull.run(); // It's just an actor post so won't hold anything up.
     } else {
-      post.run();
+      Thread waiterOrNull = node._waiterOrNull;
+      if (null != waiterOrNull) LockSupport.unpark(waiterOrNull); // External waiters won't be unparked, which is fine as they should use the API.
     }
   }
 
-  // Must be called from a synchronized method/block.
-  private void done() {
-    if (_notifyEnabled) notifyAll(); // External waiters won't be notified, which is fine as they should use the API instead of wishful thinking.
-    for (Runnable donePost : _donePostsOrNull)
-      donePost.run(); // It's just an actor post so won't hog the lock.
-    _donePostsOrNull = null; // Any further posts will be executed immediately.
+  /** Like {@link java.util.concurrent.FutureTask}, so that a caller polling with a timeout doesn't grow the stack without limit. */
+  private void unlinkDeadWaiters() {
+    retry: while (true) {
+      Node pred = null;
+      for (Node node = _stack, next; null != node && DONE != node; node = next) {
+        next = node._next;
+        if (!node.dead()) {
+          pred = node;
+        } else if (null != pred) {
+          pred._next = next;
+          if (pred.dead()) continue retry; // It was unlinked meanwhile, so this may not have taken.
+        } else if (!STACK.compareAndSet(this, node, next)) {
+          continue retry;
+        }
+      }
+      break;
+    }
+  }
+
+  // Package-private for testing only.
+  int stackSize() {
+    int size = 0;
+    for (Node node = _stack; null != node && DONE != node; node = node._next)
+      ++size;
+    return size;
+  }
+
+  /**
+   * @param timeoutNanos Negative to wait forever.
+   * @return The non-null result.
+   */
+  private Object waitForResult(long timeoutNanos) throws InterruptedException, TimeoutException {
+    Object result = _result;
+    if (null != result) return result;
+    long deadlineNanos = System.nanoTime() + timeoutNanos;
+    if (0 == timeoutNanos) throw new TimeoutException(); // Don't bother with a node.
+    Node node = new Node(null, Thread.currentThread());
+    if (!push(node)) return _result; // Not null as the stack is only DONE after the result is set.
+    try {
+      while (null == (result = _result)) {
+        if (Thread.interrupted()) throw new InterruptedException();
+        if (timeoutNanos < 0) {
+          LockSupport.park(this);
+        } else {
+          long remainingNanos = deadlineNanos - System.nanoTime();
+          if (remainingNanos <= 0) throw new TimeoutException();
+          LockSupport.parkNanos(this, remainingNanos); // Spurious wakeups are absorbed by the loop.
+        }
+      }
+      return result;
+    } finally {
+      node._waiterOrNull = null; // Don't keep the thread reachable after a timeout.
+      if (null == _result) unlinkDeadWaiters();
+    }
+  }
+
+  private V report(Object result) throws CancellationException, ExecutionException {
+    if (!(result instanceof AltResult)) return UncheckedCast.uncheckedCast(result);
+    AltResult alt = (AltResult) result;
+    switch (alt._state) {
+    case COMPLETED_NORMALLY:
+      return null;
+    case COMPLETED_ABRUPTLY:
+      throw new ExecutionException(alt._throwableOrNull);
+    default:
+      throw new CancellationException();
+    }
   }
 
   public boolean cancel(boolean mayInterruptIfRunning) {
     throw new UnsupportedOperationException("There is no unique associated task, use a higher-level mechanism.");
   }
 
-  public synchronized boolean isCancelled() {
-    return State.CANCELLED == _state;
+  public boolean isCancelled() {
+    return State.CANCELLED == state(_result);
   }
 
-  public synchronized boolean isDone() {
-    return State.NOT_DONE != _state;
+  public boolean isDone() {
+    return null != _result;
   }
 
-  public synchronized V get() throws CancellationException, InterruptedException, ExecutionException {
-    return _state.get(this);
+  public V get() throws CancellationException, InterruptedException, ExecutionException {
+    try {
+      return report(waitForResult(-1));
+    } catch (TimeoutException e) {
+      throw new AssertionError(e); // Can't happen without a timeout.
+    }
+  }
+
+  public V get(long timeout, TimeUnit unit) throws CancellationException, InterruptedException, ExecutionException, TimeoutException {
+    return report(waitForResult(Math.max(0, unit.toNanos(timeout))));
   }
 
-  public synchronized V get(long timeout, TimeUnit unit) throws CancellationException, InterruptedException, ExecutionException, TimeoutException {
-    return _state.get(this, timeout, unit);
+  public SFuture<V, E> orTimeout(Delay delay, double seconds) {
+    SFutureImpl<V, E> future = new SFutureImpl<>();
+    TaskControl control = delay.after(seconds, () -> future.tryPut(new AltResult(State.COMPLETED_ABRUPTLY, new TimeoutException())));
+    runAfterDone(() -> {
+      control.cancelOrAllow(); // Promptly forget about it in the common case.
+      future.tryPut(_result);
+    });
+    return future;
   }
 
   public void andForget(Logger log) {
@@ -202,8 +302,10 @@ public class SFutureImpl<V, E extends Throwable> implements SFuture<V, E> {
     });
   }
 
-  public synchronized V assertDoneAndGetUninterruptibly() throws IllegalStateException, CancellationException, ExecutionException {
-    return _state.assertDoneAndGetUninterruptibly(this);
+  public V assertDoneAndGetUninterruptibly() throws IllegalStateException, CancellationException, ExecutionException {
+    Object result = _result;
+    if (null == result) throw new IllegalStateException("Not yet done!");
+    return report(result);
   }
 
   public V sync() throws CancellationException, E, SyncException {
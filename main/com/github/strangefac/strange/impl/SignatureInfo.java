@@ -1,23 +1,98 @@
 package com.github.strangefac.strange.impl;
 
 import static com.github.strangefac.strange.util.ListHashCode.listHashCode;
+import static com.github.strangefac.strange.util.Standard.also;
 import static com.github.strangefac.strange.util.Standard.let;
 import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import com.github.strangefac.strange.Batch;
+import com.github.strangefac.strange.Conflate;
 import com.github.strangefac.strange.ExtProperty;
 import com.github.strangefac.strange.InnerProperty;
 import com.github.strangefac.strange.JumpQueue;
+import com.github.strangefac.strange.OneWay;
 import com.github.strangefac.strange.Patient;
 import com.github.strangefac.strange.Slow;
 import com.github.strangefac.strange.Yield;
 import com.github.strangefac.strange.impl.StrangeImpl.TargetClass;
+import gnu.trove.map.hash.THashMap;
 
 class SignatureInfo {
+  /** Builds one {@link Batch} argument array with plain array stores, rather than {@link Array#set(Object, int, Object)} per element. */
+  interface BatchAssembler {
+    /** @param batchArgs The args of each invocation in the batch. */
+    Object assemble(Object[][] batchArgs, int argIndex);
+  }
+
+  private static final Map<Class<?>, BatchAssembler> PRIMITIVE_BATCH_ASSEMBLERS = also(new THashMap<>(), it -> {
+    it.put(boolean.class, (batchArgs, argIndex) -> {
+      boolean[] array = new boolean[batchArgs.length];
+      for (int i = 0; i < array.length; ++i)
+        array[i] = (Boolean) batchArgs[i][argIndex];
+      return array;
+    });
+    it.put(byte.class, (batchArgs, argIndex) -> {
+      byte[] array = new byte[batchArgs.length];
+      for (int i = 0; i < array.length; ++i)
+        array[i] = (Byte) batchArgs[i][argIndex];
+      return array;
+    });
+    it.put(char.class, (batchArgs, argIndex) -> {
+      char[] array = new char[batchArgs.length];
+      for (int i = 0; i < array.length; ++i)
+        array[i] = (Character) batchArgs[i][argIndex];
+      return array;
+    });
+    it.put(short.class, (batchArgs, argIndex) -> {
+      short[] array = new short[batchArgs.length];
+      for (int i = 0; i < array.length; ++i)
+        array[i] = (Short) batchArgs[i][argIndex];
+      return array;
+    });
+    it.put(int.class, (batchArgs, argIndex) -> {
+      int[] array = new int[batchArgs.length];
+      for (int i = 0; i < array.length; ++i)
+        array[i] = (Integer) batchArgs[i][argIndex];
+      return array;
+    });
+    it.put(long.class, (batchArgs, argIndex) -> {
+      long[] array = new long[batchArgs.length];
+      for (int i = 0; i < array.length; ++i)
+        array[i] = (Long) batchArgs[i][argIndex];
+      return array;
+    });
+    it.put(float.class, (batchArgs, argIndex) -> {
+      float[] array = new float[batchArgs.length];
+      for (int i = 0; i < array.length; ++i)
+        array[i] = (Float) batchArgs[i][argIndex];
+      return array;
+    });
+    it.put(double.class, (batchArgs, argIndex) -> {
+      double[] array = new double[batchArgs.length];
+      for (int i = 0; i < array.length; ++i)
+        array[i] = (Double) batchArgs[i][argIndex];
+      return array;
+    });
+  });
+
+  /** The args arrive boxed from the proxy, so a primitive element is unboxed exactly once, by a cast. */
+  static BatchAssembler batchAssembler(Class<?> parameterType) {
+    BatchAssembler assembler = PRIMITIVE_BATCH_ASSEMBLERS.get(parameterType);
+    if (null != assembler) return assembler;
+    return (batchArgs, argIndex) -> {
+      Object[] array = (Object[]) Array.newInstance(parameterType, batchArgs.length);
+      for (int i = 0; i < array.length; ++i)
+        array[i] = batchArgs[i][argIndex];
+      return array;
+    };
+  }
+
   static class SignatureKey {
     private final String _name;
     private final Class<?>[] _parameterTypes;
@@ -29,10 +104,6 @@ class SignatureInfo {
       _parameterTypes = parameterTypes;
     }
 
-    Class<?> parameterType(int i) {
-      return _parameterTypes[i];
-    }
-
     public boolean equals(Object obj) {
       if (this == obj) {
         return true;
@@ -59,23 +130,65 @@ class SignatureInfo {
     }
   }
 
-  private final boolean _batch, _yield, _slow, _jumpQueue; // These are metadata, so do not need to participate in equals/hashCode.
+  /** For the constructors that only take a flag, so that a batch has the defaults of its annotation. */
+  private static final Batch DEFAULT_BATCH = new Batch() {
+    public Class<Batch> annotationType() {
+      return Batch.class;
+    }
+
+    public int maxSize() {
+      return Integer.MAX_VALUE;
+    }
+
+    public long lingerMillis() {
+      return 0;
+    }
+
+    public boolean reorder() {
+      return false;
+    }
+
+    public boolean scatter() {
+      return false;
+    }
+  };
+
+  private final boolean _yield, _slow, _jumpQueue; // These are metadata, so do not need to participate in equals/hashCode.
+  private final Batch _batchOrNull; // Metadata.
   private final ExtProperty _extPropertyOrNull; // Metadata.
   private final InnerProperty _innerPropertyOrNull; // Metadata.
-  private final boolean _patient; // Metadata.
+  private final Conflate _conflateOrNull; // Metadata.
+  private final boolean _patient, _oneWay; // Metadata.
   private final SignatureKey _key;
+  private final BatchAssembler[] _batchAssemblersOrNull;
 
   /** @throws IllegalArgumentException If both extPropertyOrNull and innerPropertyOrNull are non-null. */
   SignatureInfo(boolean batch, boolean yield, boolean slow, boolean jumpQueue, ExtProperty extPropertyOrNull, InnerProperty innerPropertyOrNull, boolean patient, String name, Class<?>... parameterTypes) throws IllegalArgumentException {
+    this(batch, yield, slow, jumpQueue, extPropertyOrNull, innerPropertyOrNull, patient, false, name, parameterTypes);
+  }
+
+  /** @throws IllegalArgumentException If both extPropertyOrNull and innerPropertyOrNull are non-null. */
+  SignatureInfo(boolean batch, boolean yield, boolean slow, boolean jumpQueue, ExtProperty extPropertyOrNull, InnerProperty innerPropertyOrNull, boolean patient, boolean oneWay, String name, Class<?>... parameterTypes) throws IllegalArgumentException {
+    this(batch ? DEFAULT_BATCH : null, yield, slow, jumpQueue, extPropertyOrNull, innerPropertyOrNull, null, patient, oneWay, name, parameterTypes);
+  }
+
+  /** @throws IllegalArgumentException If both extPropertyOrNull and innerPropertyOrNull are non-null, or the batch or conflate params are out of range. */
+  SignatureInfo(Batch batchOrNull, boolean yield, boolean slow, boolean jumpQueue, ExtProperty extPropertyOrNull, InnerProperty innerPropertyOrNull, Conflate conflateOrNull, boolean patient, boolean oneWay, String name, Class<?>... parameterTypes) throws IllegalArgumentException {
     if (null != extPropertyOrNull && null != innerPropertyOrNull) throw new IllegalArgumentException("ExtProperty and InnerProperty are mutually exclusive.");
-    _batch = batch;
+    if (null != batchOrNull && batchOrNull.maxSize() < 1) throw new IllegalArgumentException("Batch max size must be at least 1: " + batchOrNull.maxSize());
+    if (null != batchOrNull && batchOrNull.lingerMillis() < 0) throw new IllegalArgumentException("Batch linger must not be negative: " + batchOrNull.lingerMillis());
+    if (null != conflateOrNull && (conflateOrNull.key() < -1 || conflateOrNull.key() >= parameterTypes.length)) throw new IllegalArgumentException("Conflate key is not a parameter index: " + conflateOrNull.key());
+    _batchOrNull = batchOrNull;
     _yield = yield;
     _slow = slow;
     _jumpQueue = jumpQueue;
     _extPropertyOrNull = extPropertyOrNull;
     _innerPropertyOrNull = innerPropertyOrNull;
+    _conflateOrNull = conflateOrNull;
     _patient = patient;
+    _oneWay = oneWay;
     _key = new SignatureKey(name, parameterTypes);
+    _batchAssemblersOrNull = null != batchOrNull ? Arrays.stream(parameterTypes).map(SignatureInfo::batchAssembler).toArray(BatchAssembler[]::new) : null;
   }
 
   /** Passes in false/null for all annotations. */
@@ -83,13 +196,49 @@ class SignatureInfo {
     this(false, false, false, false, null, null, false, name, parameterTypes);
   }
 
-  /** For performance should only be called by {@link SignatureLookup}. */
-  SignatureInfo(Method method) {
-    this(method.isAnnotationPresent(Batch.class), method.isAnnotationPresent(Yield.class), method.isAnnotationPresent(Slow.class), method.isAnnotationPresent(JumpQueue.class), method.getAnnotation(ExtProperty.class), method.getAnnotation(InnerProperty.class), method.isAnnotationPresent(Patient.class), method.getName(), method.getParameterTypes());
+  /**
+   * For performance should only be called by {@link SignatureLookup}.
+   * 
+   * @throws IllegalArgumentException If the method is {@link OneWay} but doesn't return void, or its {@link Batch} or {@link Conflate} params are out of range.
+   */
+  SignatureInfo(Method method) throws IllegalArgumentException {
+    this(method.getAnnotation(Batch.class), method.isAnnotationPresent(Yield.class), method.isAnnotationPresent(Slow.class), method.isAnnotationPresent(JumpQueue.class), method.getAnnotation(ExtProperty.class), method.getAnnotation(InnerProperty.class), method.getAnnotation(Conflate.class), method.isAnnotationPresent(Patient.class), method.isAnnotationPresent(OneWay.class), method.getName(), method.getParameterTypes());
+    if (_oneWay && Void.TYPE != method.getReturnType()) throw new IllegalArgumentException(String.format("OneWay method must return void: %s#%s", method.getDeclaringClass().getName(), this));
   }
 
   boolean batch() {
-    return _batch;
+    return null != _batchOrNull;
+  }
+
+  /**
+   * @param batchArgs The args of each invocation in the batch, in order.
+   * @return The args for the {@link Batch} target method.
+   */
+  Object[] batchArgs(Object[][] batchArgs) {
+    Object[] args = new Object[_batchAssemblersOrNull.length];
+    for (int argIndex = 0; argIndex < args.length; ++argIndex)
+      args[argIndex] = _batchAssemblersOrNull[argIndex].assemble(batchArgs, argIndex);
+    return args;
+  }
+
+  /** Only meaningful if {@link #batch()}. */
+  int batchMaxSize() {
+    return _batchOrNull.maxSize();
+  }
+
+  /** Only meaningful if {@link #batch()}. */
+  long batchLingerNanos() {
+    return TimeUnit.MILLISECONDS.toNanos(_batchOrNull.lingerMillis());
+  }
+
+  /** Only meaningful if {@link #batch()}. */
+  boolean batchReorder() {
+    return _batchOrNull.reorder();
+  }
+
+  /** Only meaningful if {@link #batch()}. */
+  boolean batchScatter() {
+    return _batchOrNull.scatter();
   }
 
   boolean yield() {
@@ -120,10 +269,28 @@ class SignatureInfo {
     }
   }
 
+  boolean conflate() {
+    return null != _conflateOrNull;
+  }
+
+  /**
+   * Only meaningful if {@link #conflate()}.
+   * 
+   * @return Equal for invocations that replace each other.
+   */
+  Object conflationKey(Object[] args) {
+    int index = _conflateOrNull.key();
+    return -1 == index ? _key : Arrays.asList(_key, args[index]);
+  }
+
   boolean patient() {
     return _patient;
   }
 
+  boolean oneWay() {
+    return _oneWay;
+  }
+
   SignatureKey key() {
     return _key;
   }
@@ -135,7 +302,7 @@ class SignatureInfo {
    */
   Method resolve(Class<?> clazz) throws SecurityException, NoSuchMethodException {
     Class<?>[] parameterTypes;
-    if (_batch) {
+    if (null != _batchOrNull) {
       parameterTypes = Arrays.stream(_key._parameterTypes).map(pt -> Array.newInstance(pt, 0).getClass()).toArray(Class[]::new);
     } else {
       parameterTypes = _key._parameterTypes;
@@ -155,8 +322,10 @@ class SignatureInfo {
 
   public String toString() {
     return let(new StringBuilder(), sb -> {
-      if (_batch) sb.append('@').append(Batch.class.getSimpleName()).append(' ');
+      if (null != _batchOrNull) sb.append('@').append(Batch.class.getSimpleName()).append(' ');
       if (_yield) sb.append('@').append(Yield.class.getSimpleName()).append(' ');
+      if (null != _conflateOrNull) sb.append('@').append(Conflate.class.getSimpleName()).append(' ');
+      if (_oneWay) sb.append('@').append(OneWay.class.getSimpleName()).append(' ');
       return sb.append(_key).toString();
     });
   }
@@ -4,11 +4,15 @@ import static com.github.strangefac.strange.impl.ActorInvocationHandler.INIT_SIG
 import static com.github.strangefac.strange.impl.SignatureLookup.SIGNATURE_INFOS;
 import static com.github.strangefac.strange.impl.TargetClassLookup.TARGET_CLASSES;
 import static com.github.strangefac.strange.util.UncheckedCast.uncheckedCast;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.GenericDeclaration;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
@@ -24,11 +28,19 @@ import com.github.strangefac.strange.Actor;
 import com.github.strangefac.strange.ActorTarget;
 import com.github.strangefac.strange.ActorTargetThrows;
 import com.github.strangefac.strange.AllActors;
+import com.github.strangefac.strange.Batch;
+import com.github.strangefac.strange.Conflate;
+import com.github.strangefac.strange.Delay;
+import com.github.strangefac.strange.GeneratedProxy;
+import com.github.strangefac.strange.LingerDelayType;
+import com.github.strangefac.strange.LockFreeMailbox;
 import com.github.strangefac.strange.PrivateActor;
+import com.github.strangefac.strange.SlowThreadCollectionType;
 import com.github.strangefac.strange.Spawned;
 import com.github.strangefac.strange.Strange;
 import com.github.strangefac.strange.ThreadCollection;
 import com.github.strangefac.strange.ThreadCollectionType;
+import com.github.strangefac.strange.Throughput;
 import com.github.strangefac.strange.impl.SignatureInfo.SignatureKey;
 import com.github.strangefac.strange.util.ComponentSource;
 import com.github.strangefac.strange.util.TypedArrayList;
@@ -48,6 +60,10 @@ public class StrangeImpl implements Strange {
   private static class BadActorException extends RuntimeException {
     private static final long serialVersionUID = 1L;
 
+    private BadActorException(String message) {
+      super(message);
+    }
+
     private BadActorException(String message, Throwable cause) {
       super(message, cause);
     }
@@ -85,17 +101,74 @@ public class StrangeImpl implements Strange {
     throw new NotAnActorException(targetImpl.toString());
   }
 
+  /** Calls a target method, wrapping any throwable from the method itself in {@link InvocationTargetException} like {@link Method#invoke(Object, Object...)}. */
+  interface Invoker {
+    Object invoke(Object target, Object[] args) throws IllegalAccessException, InvocationTargetException;
+  }
+
+  private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+
+  /** Prefers a {@link MethodHandle}, which unlike reflection doesn't check access on every call. */
+  private static Invoker invoker(Method method) {
+    MethodHandle handle;
+    try {
+      handle = MethodHandles.lookup().unreflect(method); // Same access as reflection from this package.
+    } catch (IllegalAccessException e) {
+      return method::invoke; // Fail at invocation time as before.
+    }
+    boolean isStatic = Modifier.isStatic(method.getModifiers());
+    if (isStatic) handle = MethodHandles.dropArguments(handle, 0, Object.class); // Ignore the target like reflection does.
+    MethodHandle spreader = handle.asSpreader(Object[].class, method.getParameterCount()).asType(INVOKER_TYPE);
+    Class<?> declaringClass = method.getDeclaringClass();
+    Class<?>[] parameterTypes = method.getParameterTypes();
+    return (target, args) -> {
+      // Check up front what the spreader would otherwise throw, so that it's not mistaken for the method's own throwable:
+      if (!isStatic) {
+        if (null == target) throw new NullPointerException();
+        if (!declaringClass.isInstance(target)) throw new IllegalArgumentException("object is not an instance of declaring class");
+      }
+      if ((null == args ? 0 : args.length) != parameterTypes.length) throw new IllegalArgumentException("wrong number of arguments");
+      for (int i = 0; i < parameterTypes.length; ++i) {
+        if (!accepts(parameterTypes[i], args[i])) throw new IllegalArgumentException("argument type mismatch");
+      }
+      try {
+        return (Object) spreader.invokeExact(target, args);
+      } catch (Throwable t) {
+        throw new InvocationTargetException(t);
+      }
+    };
+  }
+
+  /** @return Whether reflection would accept the given arg for a parameter of the given type, unboxing and widening if it's primitive. */
+  private static boolean accepts(Class<?> type, Object arg) {
+    if (!type.isPrimitive()) return null == arg || type.isInstance(arg);
+    if (null == arg) return false;
+    Class<?> c = arg.getClass();
+    if (boolean.class == type) return Boolean.class == c;
+    if (char.class == type) return Character.class == c;
+    if (Byte.class == c) return byte.class == type || short.class == type || int.class == type || long.class == type || float.class == type || double.class == type;
+    if (Short.class == c) return short.class == type || int.class == type || long.class == type || float.class == type || double.class == type;
+    if (Character.class == c || Integer.class == c) return int.class == type || long.class == type || float.class == type || double.class == type;
+    if (Long.class == c) return long.class == type || float.class == type || double.class == type;
+    if (Float.class == c) return float.class == type || double.class == type;
+    return Double.class == c && double.class == type;
+  }
+
   static class TargetClass<A extends Actor> {
     private final Class<A> _actorInterface;
-    private final THashMap<SignatureKey, Method> _methods;
+    private final THashMap<SignatureKey, Invoker> _invokers;
+    private final boolean _lockFreeMailbox;
+    private final int _throughput;
+    private final boolean _lingers;
+    private final GeneratedActorFactory<A> _generatedActorFactoryOrNull;
 
     /** Don't call directly, use the {@link TargetClassLookup}. */
     TargetClass(Class<? extends ActorTargetThrows<A, ?>> targetImpl) throws NotAnActorException, BadActorException {
       _actorInterface = getActorInterface(targetImpl);
-      _methods = new THashMap<SignatureKey, Method>() {
+      _invokers = new THashMap<SignatureKey, Invoker>() {
         private void add(SignatureInfo signatureInfo) throws BadActorException {
           try {
-            put(signatureInfo.key(), signatureInfo.resolve(targetImpl));
+            put(signatureInfo.key(), invoker(signatureInfo.resolve(targetImpl)));
           } catch (NoSuchMethodException e) {
             throw new BadActorException("Failed to resolve an actor method against the target class:", e);
           }
@@ -109,14 +182,58 @@ public class StrangeImpl implements Strange {
           });
         }
       };
+      _lockFreeMailbox = targetImpl.isAnnotationPresent(LockFreeMailbox.class);
+      if (_lockFreeMailbox) {
+        getActorMethodsImpl(_actorInterface, method -> {
+          SignatureInfo signatureInfo = SIGNATURE_INFOS.getOrCreate(method);
+          if (signatureInfo.conflate()) throw unsupportedByLockFreeMailbox(Conflate.class.getSimpleName(), signatureInfo);
+          if (signatureInfo.batch() && signatureInfo.batchReorder()) throw unsupportedByLockFreeMailbox(Batch.class.getSimpleName() + " reorder", signatureInfo);
+        });
+      }
+      Throughput throughputOrNull = targetImpl.getAnnotation(Throughput.class);
+      _throughput = null == throughputOrNull ? Integer.MAX_VALUE : throughputOrNull.value();
+      if (_throughput < 1) throw new BadActorException(String.format("Throughput must be at least 1: %s", _throughput));
+      boolean[] lingers = {false};
+      getActorMethodsImpl(_actorInterface, method -> {
+        SignatureInfo signatureInfo = SIGNATURE_INFOS.getOrCreate(method);
+        if (signatureInfo.batch() && 0 != signatureInfo.batchLingerNanos()) lingers[0] = true;
+      });
+      _lingers = lingers[0];
+      _generatedActorFactoryOrNull = targetImpl.isAnnotationPresent(GeneratedProxy.class) ? GeneratedActorFactory.createOrNull(_actorInterface) : null;
     }
 
     Class<A> actorInterface() {
       return _actorInterface;
     }
 
-    Method resolve(SignatureKey signatureKey) {
-      return _methods.get(signatureKey);
+    Invoker resolve(SignatureKey signatureKey) {
+      return _invokers.get(signatureKey);
+    }
+
+    AbstractMailbox newMailbox(boolean afterTaskEnabled) {
+      return _lockFreeMailbox ? new MpscMailbox(afterTaskEnabled) : new Mailbox(afterTaskEnabled);
+    }
+
+    /** @return The max number of invocations per run of the {@link Drain}. */
+    int throughput() {
+      return _throughput;
+    }
+
+    /** @return Whether any batch lingers, so that a {@link LingerDelayType} is needed. */
+    private BadActorException unsupportedByLockFreeMailbox(String feature, SignatureInfo signatureInfo) {
+      return new BadActorException(String.format("%s is not supported by LockFreeMailbox: %s#%s", feature, _actorInterface.getName(), signatureInfo));
+    }
+
+    boolean lingers() {
+      return _lingers;
+    }
+
+    GeneratedActorFactory<A> generatedActorFactoryOrNull() {
+      return _generatedActorFactoryOrNull;
+    }
+
+    A newActor(ActorInvocationHandler<A, ?> invocationHandler) {
+      return null != _generatedActorFactoryOrNull ? _generatedActorFactoryOrNull.create(invocationHandler) : new ActorFactory<>(_actorInterface).create(invocationHandler);
     }
   }
 
@@ -170,8 +287,8 @@ public class StrangeImpl implements Strange {
     }
   }
 
-  <A extends Actor, E extends Throwable> Spawned<A, E> spawnImpl(TargetClass<A> targetClass, ActorTargetThrows<A, ? extends E> target, ThreadCollection threadCollection, Function<? super InvocationHandler, ? extends A> invocationHandlerToActor) {
-    ActorInvocationHandler<A, E> invocationHandler = new ActorInvocationHandler<>(_loggerFactory.getLogger(target.getClass().getName()), targetClass, target, threadCollection);
+  <A extends Actor, E extends Throwable> Spawned<A, E> spawnImpl(TargetClass<A> targetClass, ActorTargetThrows<A, ? extends E> target, ThreadCollection threadCollection, ThreadCollection slowThreadCollectionOrNull, Delay lingerDelayOrNull, Function<? super ActorInvocationHandler<A, E>, ? extends A> invocationHandlerToActor) {
+    ActorInvocationHandler<A, E> invocationHandler = new ActorInvocationHandler<>(_loggerFactory.getLogger(target.getClass().getName()), targetClass, target, threadCollection, slowThreadCollectionOrNull, lingerDelayOrNull);
     A actor = invocationHandlerToActor.apply(invocationHandler);
     _allActors.purgeAndAdd(actor); // Do this before posting init so that all invocations can see their actor in the array.
     return new SpawnedImpl<>(actor, invocationHandler.init(actor));
@@ -183,6 +300,12 @@ public class StrangeImpl implements Strange {
     return a.value();
   }
 
+  private static Class<? extends Delay> getLingerDelayTypeOrFail(AnnotatedElement targetImpl) throws IllegalArgumentException {
+    LingerDelayType a = targetImpl.getAnnotation(LingerDelayType.class);
+    if (null == a) throw new IllegalArgumentException(String.format("%s has a lingering Batch but no LingerDelayType annotation.", targetImpl));
+    return a.value();
+  }
+
   private final ConcurrentHashMap<Class<? extends ThreadCollection>, ThreadCollection> _threadCollections = new ConcurrentHashMap<>();
 
   private ThreadCollection getThreadCollection(Class<? extends ThreadCollection> type) {
@@ -193,7 +316,10 @@ public class StrangeImpl implements Strange {
     @SuppressWarnings("rawtypes")
     Class<? extends ActorTargetThrows<A, ? extends E>> targetImpl = UncheckedCast.<Class<? extends ActorTargetThrows>, Class<? extends ActorTargetThrows<A, ? extends E>>> uncheckedCast(target.getClass());
     Class<? extends ThreadCollection> threadCollectionType = getThreadCollectionTypeOrFail(targetImpl);
+    SlowThreadCollectionType slowThreadCollectionTypeOrNull = targetImpl.getAnnotation(SlowThreadCollectionType.class);
     TargetClass<A> targetClass = TARGET_CLASSES.getOrCreate(targetImpl);
-    return spawnImpl(targetClass, target, getThreadCollection(threadCollectionType), invocationHandler -> new ActorFactory<>(targetClass._actorInterface).create(invocationHandler));
+    ThreadCollection slowThreadCollectionOrNull = null == slowThreadCollectionTypeOrNull ? null : getThreadCollection(slowThreadCollectionTypeOrNull.value());
+    Delay lingerDelayOrNull = targetClass.lingers() ? _componentSource.getComponent(getLingerDelayTypeOrFail(targetImpl)) : null;
+    return spawnImpl(targetClass, target, getThreadCollection(threadCollectionType), slowThreadCollectionOrNull, lingerDelayOrNull, targetClass::newActor);
   }
 }
@@ -0,0 +1,8 @@
+package com.github.strangefac.strange.pool;
+
+import com.github.strangefac.strange.ThreadCollection;
+
+/** For actors whose methods block e.g. on I/O, so that they don't tie up the threads of a {@link ThreadPoolThreadCollection}. */
+public interface BlockingThreadCollection extends ThreadCollection {
+  // Nothing else.
+}
@@ -1,7 +1,5 @@
 package com.github.strangefac.strange.pool;
 
-import static com.github.strangefac.strange.pool.PoolThread.EMPTY_POOL_THREAD_ARRAY;
-import java.util.Iterator;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
@@ -11,7 +9,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.github.strangefac.strange.util.Disposable;
 import com.github.strangefac.strange.util.TypedArrayList;
-import gnu.trove.set.hash.TLinkedHashSet;
+import gnu.trove.set.hash.THashSet;
 
 /**
  * Like {@link Executors#newCachedThreadPool()} we don't limit the number of threads, to avoid deadlock when 100 actors try to access the same getter. Unlike
@@ -34,37 +32,63 @@ public class CustomThreadPoolThreadCollection implements Disposable, PoolThreadO
     _minCreatePeriodNanos = TimeUnit.NANOSECONDS.convert(minCreatePeriod, TimeUnit.MILLISECONDS);
   }
 
-  /** From most recently clear to likely clear to likely occupied. */
-  private final TLinkedHashSet<PoolThread> _threads = new TLinkedHashSet<>();
+  /** Threads that may have a task, including those retiring. */
+  private final THashSet<PoolThread> _busy = new THashSet<>();
   private final ScheduledExecutorService _resubmit = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "Resubmit"));
   private final TypedArrayList<Runnable> _resubmitCommands = new TypedArrayList<>(Runnable.class);
   private boolean _acceptNew;
   private int _threadNumber;
   private int _largestSize;
   private long _minCreateTimeNanos;
-  private PoolThread[] _otherThreads;
+  /** The most recently clear thread, so that the least recently clear ones time-out. */
+  private PoolThread _idleTopOrNull;
+  private int _idleCount;
   {
     synchronized (this) {
       _acceptNew = true;
       _threadNumber = 1;
       _largestSize = 0;
       _minCreateTimeNanos = System.nanoTime();
-      _otherThreads = EMPTY_POOL_THREAD_ARRAY;
+      _idleTopOrNull = null;
+      _idleCount = 0;
     }
   }
 
+  /** Must be called from a synchronized method. */
+  private void pushIdle(PoolThread thread) {
+    thread._idleBelow = _idleTopOrNull;
+    if (null != _idleTopOrNull) _idleTopOrNull._idleAbove = thread;
+    _idleTopOrNull = thread;
+    thread._idle = true;
+    ++_idleCount;
+  }
+
+  /** Must be called from a synchronized method. */
+  private void removeIdle(PoolThread thread) {
+    if (null == thread._idleAbove) {
+      _idleTopOrNull = thread._idleBelow;
+    } else {
+      thread._idleAbove._idleBelow = thread._idleBelow;
+    }
+    if (null != thread._idleBelow) thread._idleBelow._idleAbove = thread._idleAbove;
+    thread._idleAbove = thread._idleBelow = null;
+    thread._idle = false;
+    --_idleCount;
+  }
+
+  /** Must be called from a synchronized method. */
+  private int size() {
+    return _idleCount + _busy.size();
+  }
+
   /** @throws RejectedExecutionException If not started or is stopping. */
   public synchronized void execute(Runnable command) throws RejectedExecutionException {
     if (!_acceptNew) throw new RejectedExecutionException(NOT_ACCEPTING_NEW_MESSAGE);
-    // Try to find a clear thread, starting with the most likely to be clear:
-    for (Iterator<PoolThread> i = _threads.iterator(); i.hasNext();) {
-      PoolThread thread = i.next();
-      if (thread._taskHolder.put(command)) {
-        // Move it to the end of the list, as it's now the least likely to be clear:
-        i.remove();
-        _threads.add(thread);
-        return;
-      }
+    while (null != _idleTopOrNull) {
+      PoolThread thread = _idleTopOrNull;
+      removeIdle(thread);
+      _busy.add(thread); // If the put fails the thread is retiring, and will be discarded from here.
+      if (thread._taskHolder.put(command)) return;
     }
     // We need to create a thread, but first we have to observe the min create period:
     long nowNanos = System.nanoTime(), delayNanos = _minCreateTimeNanos - nowNanos;
@@ -74,11 +98,11 @@ public class CustomThreadPoolThreadCollection implements Disposable, PoolThreadO
       _resubmit.schedule(_resubmitTask, delayNanos, TimeUnit.NANOSECONDS); // Like prepending a pause to command.
       return;
     }
-    LOG.debug("[{}] Creating thread for pool size: {}", command, _threads.size() + 1);
+    LOG.debug("[{}] Creating thread for pool size: {}", command, size() + 1);
     PoolThread thread = new PoolThread(getClass().getSimpleName() + '-' + _threadNumber++, command, this, _threadTimeoutMillis);
     thread.start();
-    _threads.add(thread); // The only place the set is grown.
-    _largestSize = Math.max(_largestSize, _threads.size());
+    _busy.add(thread); // The only place the pool is grown.
+    _largestSize = Math.max(_largestSize, size());
     _minCreateTimeNanos = nowNanos + _minCreatePeriodNanos;
   }
 
@@ -99,35 +123,22 @@ public class CustomThreadPoolThreadCollection implements Disposable, PoolThreadO
   }
 
   public synchronized void promote(PoolThread thread) {
-    // This is clearly inefficient, but there should only be of the order of 100 elements:
-    _threads.remove(thread);
-    int n = _threads.size();
-    _otherThreads = _threads.toArray(_otherThreads); // Note may contain garbage after first n elements.
-    _threads.clear(); // Does not affect capacity.
-    _threads.add(thread);
-    for (int i = 0; i < n; ++i)
-      _threads.add(_otherThreads[i]);
+    _busy.remove(thread);
+    pushIdle(thread);
     resubmitSafely(false);
   }
 
   public synchronized void discard(PoolThread thread) {
-    _threads.remove(thread);
-    LOG.debug("Pool size decremented to: {}", _threads.size());
+    if (thread._idle) {
+      removeIdle(thread); // It timed-out.
+    } else {
+      _busy.remove(thread);
+    }
+    LOG.debug("Pool size decremented to: {}", size());
   }
 
-  public Metrics takeMetrics() {
-    int largestSizeSnapshot;
-    PoolThread[] threadsSnapshot;
-    synchronized (this) {
-      largestSizeSnapshot = _largestSize;
-      threadsSnapshot = _threads.toArray(EMPTY_POOL_THREAD_ARRAY);
-    }
-    // Do this outside of synchronized so as not to hog the pool lock:
-    int activeCount = 0;
-    for (PoolThread thread : threadsSnapshot) {
-      if (!thread._taskHolder.isClear()) ++activeCount;
-    }
-    return new Metrics(largestSizeSnapshot, threadsSnapshot.length, activeCount);
+  public synchronized Metrics takeMetrics() {
+    return new Metrics(_largestSize, size(), _busy.size());
   }
 
   /**
@@ -144,14 +155,17 @@ public class CustomThreadPoolThreadCollection implements Disposable, PoolThreadO
     synchronized (this) {
       if (!_acceptNew) throw new IllegalStateException("Already stopped.");
       _acceptNew = false;
-      for (PoolThread thread : _threads) {
+      threads = _busy.toArray(new PoolThread[size()]);
+      int i = _busy.size();
+      for (PoolThread thread = _idleTopOrNull; null != thread; thread = thread._idleBelow)
+        threads[i++] = thread;
+      for (PoolThread thread : threads) {
         try {
           thread._taskHolder.exit();
         } catch (IllegalStateException e) {
           // Ignore: The thread already knows it has to exit.
         }
       }
-      threads = _threads.toArray(EMPTY_POOL_THREAD_ARRAY);
     }
     // We can't synchronize around the joins as each thread calls discard before it dies:
     for (PoolThread thread : threads)
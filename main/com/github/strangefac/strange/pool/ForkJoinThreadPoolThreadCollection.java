@@ -0,0 +1,71 @@
+package com.github.strangefac.strange.pool;
+
+import static com.github.strangefac.strange.pool.CustomThreadPoolThreadCollection.NOT_ACCEPTING_NEW_MESSAGE;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.github.strangefac.strange.util.Disposable;
+
+/**
+ * A fixed number of threads that steal tasks from each other's deques, so that there is no lock shared by all threads. Each deque is FIFO, but there is no
+ * order across deques, so tasks submitted from different threads, or stolen, may run in any order relative to each other.
+ * <p>
+ * Unlike {@link CustomThreadPoolThreadCollection} the number of threads is bounded, so this is only suitable for actors that don't block, e.g. on
+ * {@link com.github.strangefac.strange.Syncable#sync()}. Otherwise all threads may block waiting for actors that can't run.
+ */
+public class ForkJoinThreadPoolThreadCollection implements Disposable, ThreadPoolThreadCollection {
+  private static final Logger LOG = LoggerFactory.getLogger(ForkJoinThreadPoolThreadCollection.class);
+  private final AtomicInteger _threadNumber = new AtomicInteger(1), _size = new AtomicInteger(), _largestSize = new AtomicInteger();
+  private final ForkJoinPool _pool;
+
+  private class Worker extends ForkJoinWorkerThread {
+    private Worker(ForkJoinPool pool) {
+      super(pool);
+      setName(ForkJoinThreadPoolThreadCollection.class.getSimpleName() + '-' + _threadNumber.getAndIncrement());
+      int size = _size.incrementAndGet();
+      _largestSize.accumulateAndGet(size, Math::max);
+    }
+
+    protected void onTermination(Throwable exceptionOrNull) {
+      _size.decrementAndGet();
+      super.onTermination(exceptionOrNull);
+    }
+  }
+
+  /** @param parallelism The number of threads, typically the number of cores. */
+  public ForkJoinThreadPoolThreadCollection(int parallelism) {
+    _pool = new ForkJoinPool(parallelism, Worker::new, (thread, e) -> LOG.error("Task failed:", e), true); // Async mode for FIFO.
+  }
+
+  /** One thread per core. */
+  public ForkJoinThreadPoolThreadCollection() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /** @throws RejectedExecutionException If disposed. */
+  public void execute(Runnable command) throws RejectedExecutionException {
+    if (_pool.isShutdown()) throw new RejectedExecutionException(NOT_ACCEPTING_NEW_MESSAGE);
+    _pool.execute(command); // Unlike a forked adapter, a throwable reaches the handler.
+  }
+
+  public Metrics takeMetrics() {
+    return new Metrics(_largestSize.get(), _size.get(), _pool.getActiveThreadCount());
+  }
+
+  /**
+   * Similar behaviour to {@link java.util.concurrent.ExecutorService#shutdown()} in that existing tasks are allowed to complete, but then waits for the threads
+   * to die.
+   *
+   * @throws IllegalStateException If already disposed.
+   */
+  public void dispose() throws IllegalStateException, InterruptedException {
+    if (_pool.isShutdown()) throw new IllegalStateException("Already stopped.");
+    _pool.shutdown();
+    while (!_pool.isTerminated())
+      _pool.awaitTermination(1, TimeUnit.SECONDS);
+  }
+}
@@ -3,9 +3,12 @@ package com.github.strangefac.strange.pool;
 import static com.github.strangefac.strange.pool.TaskHolder.EXIT_TASK;
 
 class PoolThread extends Thread {
-  static final PoolThread[] EMPTY_POOL_THREAD_ARRAY = new PoolThread[0];
   /** The thread-safe task queue. */
   final TaskHolder _taskHolder;
+  /** Links in the idle stack of {@link CustomThreadPoolThreadCollection}, guarded by it. */
+  PoolThread _idleAbove, _idleBelow;
+  /** Whether this is in the idle stack, guarded likewise. */
+  boolean _idle;
   private final PoolThreadOwner _owner;
   private final long _timeoutMillis;
 
@@ -1,35 +1,52 @@
 package com.github.strangefac.strange.pool;
 
-import java.util.Deque;
-import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
+/** Hand-off of at most one task (plus the exit task) to a thread, as a single atomic slot so that {@link #put(Runnable)} takes no lock. */
 class TaskHolder {
   // Package-private for testing only.
   static final Runnable EXIT_TASK = () -> {
     throw new UnsupportedOperationException("Should not be executed.");
   };
-  private final Deque<Runnable> _tasks;
+  /** How many times to re-check the slot before parking, in case a task is about to arrive. Pointless with one core. */
+  private static final int SPIN_COUNT = Runtime.getRuntime().availableProcessors() > 1 ? 100 : 0;
+
+  /** The slot value when there is a task with the exit task behind it. */
+  private static class ExitAfter {
+    private final Runnable _task;
+
+    private ExitAfter(Runnable task) {
+      _task = task;
+    }
+  }
+
+  /** Null when clear, otherwise a task, {@link #EXIT_TASK} or {@link ExitAfter}. */
+  private final AtomicReference<Object> _slot;
+  /** Threads parked in {@link #peekOrExit(long)}, in practice at most one. */
+  private final Queue<Thread> _waiters = new ConcurrentLinkedQueue<>();
 
   /**
    * @param task The initial task.
    * @throws IllegalArgumentException Thrown by {@link #put(Runnable)}.
    */
   TaskHolder(Runnable task) throws IllegalArgumentException {
-    synchronized (this) {
-      _tasks = new LinkedList<>();
-      put(task); // Take advantage of its arg checks. Will return true.
-    }
+    _slot = new AtomicReference<>();
+    put(task); // Take advantage of its arg checks. Will return true.
   }
 
   /**
    * @return true on success, or false if this currently has a task.
    * @throws IllegalArgumentException If task is null or {@link #EXIT_TASK}.
    */
-  synchronized boolean put(Runnable task) throws IllegalArgumentException {
+  boolean put(Runnable task) throws IllegalArgumentException {
     if (null == task) throw new IllegalArgumentException("The task must not be null.");
     if (EXIT_TASK == task) throw new IllegalArgumentException("Use the exit method.");
-    if (!_tasks.isEmpty()) return false;
-    addAndNotifyAll(task);
+    if (!_slot.compareAndSet(null, task)) return false;
+    unparkWaiters();
     return true;
   }
 
@@ -38,37 +55,63 @@ class TaskHolder {
    * 
    * @throws IllegalStateException If the exit task is already enqueued.
    */
-  synchronized void exit() throws IllegalStateException {
-    if (!_tasks.isEmpty() && EXIT_TASK == _tasks.getLast()) throw new IllegalStateException("The exit task is already added.");
-    addAndNotifyAll(EXIT_TASK);
+  void exit() throws IllegalStateException {
+    while (true) {
+      Object slot = _slot.get();
+      if (EXIT_TASK == slot || slot instanceof ExitAfter) throw new IllegalStateException("The exit task is already added.");
+      if (_slot.compareAndSet(slot, null == slot ? EXIT_TASK : new ExitAfter((Runnable) slot))) break;
+    }
+    unparkWaiters();
+  }
+
+  private void unparkWaiters() {
+    for (Thread thread : _waiters) // Iterating an empty queue is cheap.
+      LockSupport.unpark(thread);
   }
 
-  /** Must be called from a synchronized method. */
-  private void addAndNotifyAll(Runnable task) {
-    _tasks.add(task);
-    notifyAll(); // Wake up all threads in peekOrExit (in practice there is at most one).
+  private static Runnable head(Object slot) {
+    return slot instanceof ExitAfter ? ((ExitAfter) slot)._task : (Runnable) slot;
   }
 
   /**
    * @param timeoutMillis The wait timeout, where non-positive means don't bother waiting.
    * @return The non-null task, which may be {@link #EXIT_TASK}.
    */
-  synchronized Runnable peekOrExit(long timeoutMillis) {
-    if (!_tasks.isEmpty()) return _tasks.getFirst(); // Yay!
-    if (timeoutMillis > 0) { // This check is necessary because wait is special when given 0.
-      try {
-        wait(timeoutMillis); // Waiting for a put.
-      } catch (InterruptedException e) {
-        Thread.currentThread().interrupt(); // Propagate.
-      }
+  Runnable peekOrExit(long timeoutMillis) {
+    Object slot = _slot.get();
+    if (null != slot) return head(slot); // Yay!
+    if (timeoutMillis > 0) {
+      for (int i = 0; i < SPIN_COUNT && null == slot; ++i)
+        slot = _slot.get();
+      if (null == slot) slot = park(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
     }
-    if (_tasks.isEmpty()) {
+    if (null == slot) {
       // Almost always a timeout, in which case this thread can retire itself.
-      // Could be an interrupt, in which case let's chicken out and exit.
-      // Rarely a spurious wakeup, in which case we won't mind the loss of one thread:
-      addAndNotifyAll(EXIT_TASK); // In practice there are no other threads to notify.
+      // Could be an interrupt, in which case let's chicken out and exit:
+      if (_slot.compareAndSet(null, EXIT_TASK)) {
+        unparkWaiters(); // In practice there are no other threads to unpark.
+        return EXIT_TASK;
+      }
+      slot = _slot.get(); // Only the thread that peeks takes a task out, so this is non-null.
+    }
+    return head(slot);
+  }
+
+  /** @return The slot, or null on timeout or interrupt. */
+  private Object park(long deadlineNanos) {
+    Thread thread = Thread.currentThread();
+    _waiters.add(thread); // Before the check, so that a put either sees us or is seen by us.
+    try {
+      while (true) {
+        Object slot = _slot.get();
+        if (null != slot || thread.isInterrupted()) return slot; // Don't clear the interrupt, it's for the caller.
+        long remainingNanos = deadlineNanos - System.nanoTime();
+        if (remainingNanos <= 0) return null;
+        LockSupport.parkNanos(this, remainingNanos); // Spurious wakeups are fine.
+      }
+    } finally {
+      _waiters.remove(thread);
     }
-    return _tasks.getFirst();
   }
 
   /**
@@ -77,11 +120,14 @@ class TaskHolder {
    * @return Whether this holder is now clear.
    * @throws IllegalStateException If empty or it's the exit task.
    */
-  synchronized boolean consume() throws IllegalStateException {
-    if (_tasks.isEmpty()) throw new IllegalStateException("Nothing to consume.");
-    if (EXIT_TASK == _tasks.getFirst()) throw new IllegalStateException("The exit task should not be consumed.");
-    _tasks.removeFirst();
-    return _tasks.isEmpty();
+  boolean consume() throws IllegalStateException {
+    while (true) {
+      Object slot = _slot.get();
+      if (null == slot) throw new IllegalStateException("Nothing to consume.");
+      if (EXIT_TASK == slot) throw new IllegalStateException("The exit task should not be consumed.");
+      Object next = slot instanceof ExitAfter ? EXIT_TASK : null;
+      if (_slot.compareAndSet(slot, next)) return null == next;
+    }
   }
 
   /**
@@ -90,7 +136,7 @@ class TaskHolder {
    * 
    * @return true iff this has no tasks.
    */
-  synchronized boolean isClear() {
-    return _tasks.isEmpty();
+  boolean isClear() {
+    return null == _slot.get();
   }
 }
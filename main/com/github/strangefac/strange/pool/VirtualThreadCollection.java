@@ -0,0 +1,75 @@
+package com.github.strangefac.strange.pool;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.github.strangefac.strange.util.Disposable;
+
+/**
+ * Runs each command on a new virtual thread, so that many actors can block at once without a platform thread each. If the JVM doesn't have virtual threads
+ * this is simply a {@link CustomThreadPoolThreadCollection}. Actors that don't block are better off with a {@link ThreadPoolThreadCollection}.
+ */
+public class VirtualThreadCollection implements Disposable, BlockingThreadCollection {
+  private static final Logger LOG = LoggerFactory.getLogger(VirtualThreadCollection.class);
+
+  /** We compile against a JDK that doesn't have virtual threads, hence the reflection. */
+  private static ExecutorService newVirtualThreadPerTaskExecutorOrNull() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (NoSuchMethodException e) {
+      return null; // Too old.
+    } catch (InvocationTargetException e) {
+      LOG.warn("Virtual threads not available:", e.getCause()); // Typically a preview feature that isn't enabled.
+      return null;
+    } catch (IllegalAccessException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private final ExecutorService _virtualOrNull;
+  private final CustomThreadPoolThreadCollection _fallbackOrNull;
+
+  /** The params are for the {@link CustomThreadPoolThreadCollection} in case the JVM doesn't have virtual threads. */
+  public VirtualThreadCollection(long threadTimeout, long minCreatePeriod) {
+    _virtualOrNull = newVirtualThreadPerTaskExecutorOrNull();
+    if (null == _virtualOrNull) {
+      LOG.info("Falling back to platform threads.");
+      _fallbackOrNull = new CustomThreadPoolThreadCollection(threadTimeout, minCreatePeriod);
+    } else {
+      _fallbackOrNull = null;
+    }
+  }
+
+  /** @return Whether commands run on virtual threads, otherwise they run on the fallback pool. */
+  public boolean virtual() {
+    return null != _virtualOrNull;
+  }
+
+  /** @throws RejectedExecutionException If disposed. */
+  public void execute(Runnable command) throws RejectedExecutionException {
+    if (null != _virtualOrNull)
+      _virtualOrNull.execute(command);
+    else
+      _fallbackOrNull.execute(command);
+  }
+
+  /**
+   * Existing tasks are allowed to complete, and this waits for them.
+   * 
+   * @throws IllegalStateException If already disposed.
+   */
+  public void dispose() throws IllegalStateException, InterruptedException {
+    if (null != _virtualOrNull) {
+      if (_virtualOrNull.isShutdown()) throw new IllegalStateException("Already stopped.");
+      _virtualOrNull.shutdown();
+      while (!_virtualOrNull.isTerminated())
+        _virtualOrNull.awaitTermination(1, TimeUnit.SECONDS);
+    } else {
+      _fallbackOrNull.dispose();
+    }
+  }
+}
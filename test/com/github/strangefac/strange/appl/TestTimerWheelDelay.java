@@ -0,0 +1,282 @@
+package com.github.strangefac.strange.appl;
+
+import static com.github.strangefac.strange.util.SlowTests.slowTestsEnabled;
+import static com.github.strangefac.strange.util.Standard.also;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.github.strangefac.strange.Actor;
+import com.github.strangefac.strange.ActorTarget;
+import com.github.strangefac.strange.AllActors;
+import com.github.strangefac.strange.Delay;
+import com.github.strangefac.strange.Delay.TaskControl;
+import com.github.strangefac.strange.appl.TimerWheelDelay.Timeout;
+import com.github.strangefac.strange.ThreadCollectionType;
+import com.github.strangefac.strange.function.VoidCallable;
+import com.github.strangefac.strange.impl.ManualThreadCollection;
+import com.github.strangefac.strange.impl.StrangeImpl;
+import com.github.strangefac.strange.util.ComponentSource;
+import com.github.strangefac.strange.util.EasyMockRule;
+
+public class TestTimerWheelDelay {
+  private static final Logger LOG = LoggerFactory.getLogger(TestTimerWheelDelay.class);
+  private static final long TICK = 10;
+
+  public interface Quiet extends Actor {
+    // No methods.
+  }
+
+  @ThreadCollectionType(ManualThreadCollection.class)
+  public static class QuietTarget implements ActorTarget<Quiet> {
+    public void init(Quiet actor) {
+      // Do nothing.
+    }
+  }
+
+  @Rule
+  public final EasyMockRule _mocks = new EasyMockRule();
+  private final TimerWheelDelay _delay = new TimerWheelDelay(TICK, 8); // A small wheel so that rounds are exercised.
+
+  @After
+  public void tearDown() throws InterruptedException {
+    _delay.dispose(); // Idempotent.
+  }
+
+  @Test
+  public void firesOnTimeNeverEarly() throws InterruptedException, ExecutionException {
+    for (double seconds : new double[] {0, .05, .3}) { // The last is several rounds.
+      CountDownLatch running = new CountDownLatch(1);
+      long startNanos = System.nanoTime();
+      long[] firedNanos = new long[1];
+      TaskControl control = _delay.after(seconds, () -> {
+        firedNanos[0] = System.nanoTime();
+        running.countDown();
+      });
+      assertTrue(running.await(1, TimeUnit.SECONDS));
+      control.waitFor();
+      double took = (firedNanos[0] - startNanos) / 1e9;
+      assertTrue(took >= seconds);
+      assertEquals(seconds, took, .1);
+      assertFalse(control.cancelOrAllow()); // Too late.
+    }
+  }
+
+  @Test
+  public void hugeDelayNeverFires() throws InterruptedException {
+    CountDownLatch running = new CountDownLatch(1);
+    List<TaskControl> controls = new ArrayList<>();
+    for (double seconds : new double[] {1e10, Double.MAX_VALUE, Double.POSITIVE_INFINITY})
+      controls.add(_delay.after(seconds, running::countDown));
+    assertFalse(running.await(5 * TICK, TimeUnit.MILLISECONDS)); // Not fired at once due to overflow.
+    for (TaskControl control : controls)
+      assertTrue(control.cancelOrAllow());
+  }
+
+  @Test
+  public void cancelWorks() throws InterruptedException {
+    CountDownLatch running = new CountDownLatch(1);
+    TaskControl control = _delay.after(.05, running::countDown);
+    assertTrue(control.cancelOrAllow());
+    assertFalse(control.cancelOrAllow()); // Already cancelled.
+    catchThrowableOfType(control::waitFor, CancellationException.class);
+    assertFalse(running.await(200, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void sameTickRunsAsBatchInOrder() throws InterruptedException {
+    int n = 1000;
+    List<Integer> order = new ArrayList<>(); // Only touched by the worker.
+    CountDownLatch done = new CountDownLatch(n);
+    List<TaskControl> controls = new ArrayList<>();
+    for (int i = 0; i < n; ++i) {
+      int k = i;
+      controls.add(_delay.after(.05, () -> {
+        order.add(k);
+        done.countDown();
+      }));
+    }
+    for (int i = 1; i < n; i += 2) // Cancel the odd ones.
+      assertTrue(controls.get(i).cancelOrAllow());
+    done.await(50 + 2 * TICK, TimeUnit.MILLISECONDS); // Doesn't reach zero.
+    assertEquals(n / 2, done.getCount());
+    for (int i = 0; i < n; i += 2)
+      assertTrue(((Timeout) controls.get(i)).isDone());
+    for (int i = 0; i < n / 2; ++i)
+      assertEquals(Integer.valueOf(2 * i), order.get(i));
+  }
+
+  @Test
+  public void slackFiresLateNeverEarly() throws InterruptedException, ExecutionException {
+    long slackMillis = 200;
+    TimerWheelDelay delay = new TimerWheelDelay(TICK, 8, slackMillis);
+    try {
+      long startNanos = System.nanoTime();
+      long[] firedNanos = new long[1];
+      delay.after(.05, () -> {
+        firedNanos[0] = System.nanoTime();
+      }).waitFor();
+      double took = (firedNanos[0] - startNanos) / 1e9;
+      assertTrue(took >= .05);
+      assertTrue(took < .05 + (slackMillis + 2 * TICK) / 1e3);
+    } finally {
+      delay.dispose();
+    }
+  }
+
+  @Test
+  public void sameActorSameTickIsOnePost() throws InterruptedException, ExecutionException {
+    ManualThreadCollection thread = new ManualThreadCollection();
+    ComponentSource componentSource = also(_mocks.createMock(ComponentSource.class), it -> expect(it.getComponent(ManualThreadCollection.class)).andReturn(thread));
+    AllActors allActors = also(_mocks.createMock(AllActors.class), it -> {
+      it.purgeAndAdd(anyObject());
+      expectLastCall().anyTimes();
+    });
+    _mocks.replay();
+    Quiet actor = new StrangeImpl(componentSource, LoggerFactory.getILoggerFactory(), allActors).spawn(new QuietTarget()).actor();
+    TimerWheelDelay delay = new TimerWheelDelay(TICK, 8, 200);
+    try {
+      List<Integer> order = new ArrayList<>(); // Only touched by the actor.
+      List<TaskControl> controls = Arrays.asList(delay.after(.051, actor, () -> order.add(1), LOG), delay.after(.052, actor, () -> {
+        throw new RuntimeException("Expected.");
+      }, LOG), delay.after(.053, actor, thisTask -> order.add(3), LOG), delay.after(.054, actor, () -> order.add(4), LOG));
+      assertTrue(controls.get(3).cancelOrAllow());
+      long deadlineTick = -1;
+      for (TaskControl control : controls.subList(0, 3)) {
+        control.waitFor();
+        long tick = ((Timeout) control).deadlineTick();
+        assumeTrue(deadlineTick < 0 || deadlineTick == tick); // Very unlikely, but they may straddle a slack window.
+        deadlineTick = tick;
+      }
+      thread.postExitCommand();
+      assertEquals(2, thread.enter()); // Init, then the batch.
+      assertEquals(Arrays.asList(1, 3), order); // The failure didn't stop the batch.
+    } finally {
+      delay.dispose();
+    }
+  }
+
+  @Test
+  public void idleWorkerParksUntilAdded() throws InterruptedException, ExecutionException {
+    _delay.after(0, VoidCallable.PASS).waitFor();
+    Thread.sleep(3 * TICK);
+    assertEquals(Thread.State.WAITING, _delay.workerState()); // No deadline, so not ticking.
+    long startNanos = System.nanoTime();
+    _delay.after(.05, VoidCallable.PASS).waitFor();
+    double took = (System.nanoTime() - startNanos) / 1e9;
+    assertTrue(took >= .05);
+    assertEquals(.05, took, .1); // The skipped ticks didn't make it early or late.
+  }
+
+  @Test
+  public void failureIsAbsorbed() throws InterruptedException, ExecutionException {
+    CountDownLatch running = new CountDownLatch(1);
+    _delay.after(0, () -> {
+      throw new RuntimeException("Expected.");
+    }).waitFor(); // Worker survives.
+    _delay.after(0, running::countDown);
+    assertTrue(running.await(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void rejectsAfterDispose() throws InterruptedException {
+    _delay.dispose();
+    catchThrowableOfType(() -> _delay.after(0, VoidCallable.PASS), RejectedExecutionException.class);
+  }
+
+  private static long allocatedBytesToScheduleAndCancel(Delay delay, int count) {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    assumeTrue(bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported());
+    com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) bean;
+    allocations.setThreadAllocatedMemoryEnabled(true);
+    long threadId = Thread.currentThread().getId(), before = allocations.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < count; ++i)
+      delay.after(3600, VoidCallable.PASS).cancelOrAllow();
+    return allocations.getThreadAllocatedBytes(threadId) - before;
+  }
+
+  private static long usedHeapAfterGc() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; ++i) // Once isn't always enough.
+      System.gc();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  /** Only the controls themselves should be retained, so this is the heap that each costs while its owner holds on to it. */
+  private static long retainedBytesOfCancelled(Delay delay, List<TaskControl> controls, int count) throws InterruptedException {
+    controls.clear();
+    long before = usedHeapAfterGc();
+    for (int i = 0; i < count; ++i)
+      controls.add(also(delay.after(3600, VoidCallable.PASS), TaskControl::cancelOrAllow));
+    Thread.sleep(3 * TICK); // Let any worker unlink them.
+    return usedHeapAfterGc() - before;
+  }
+
+  @Test
+  public void cancelledDelaysAreNotLeftQueued() throws InterruptedException {
+    DelayImpl delayImpl = new DelayImpl();
+    try {
+      for (int i = 0; i < 1000; ++i)
+        delayImpl.after(3600, VoidCallable.PASS).cancelOrAllow();
+      assertEquals(0, delayImpl.queueSize()); // Thanks to the remove on cancel policy.
+    } finally {
+      delayImpl.dispose();
+    }
+    for (int i = 0; i < 1000; ++i)
+      _delay.after(3600, VoidCallable.PASS).cancelOrAllow();
+    Thread.sleep(3 * TICK); // Let the worker unlink them.
+    assertEquals(0, _delay.wheelCount());
+  }
+
+  @Rule
+  public final TestName _testName = new TestName();
+
+  /** Not really a test, but compares the garbage and the retained heap of a million long cancelled delays, and checks none of them are left queued. */
+  @Test
+  public void millionCancelledDelays() throws InterruptedException {
+    if (!slowTestsEnabled(_testName)) return;
+    int count = 1000000;
+    List<TaskControl> controls = new ArrayList<>(count);
+    DelayImpl delayImpl = new DelayImpl();
+    long delayImplBytes, delayImplRetained;
+    try {
+      allocatedBytesToScheduleAndCancel(delayImpl, count / 10); // Warm up.
+      delayImplBytes = allocatedBytesToScheduleAndCancel(delayImpl, count);
+      delayImplRetained = retainedBytesOfCancelled(delayImpl, controls, count);
+      assertEquals(0, delayImpl.queueSize()); // Thanks to the remove on cancel policy.
+    } finally {
+      delayImpl.dispose();
+    }
+    allocatedBytesToScheduleAndCancel(_delay, count / 10);
+    long timerWheelBytes = allocatedBytesToScheduleAndCancel(_delay, count);
+    long timerWheelRetained = retainedBytesOfCancelled(_delay, controls, count);
+    assertEquals(0, _delay.wheelCount());
+    assertEquals(count, controls.size()); // Still referenced while measured.
+    System.err.println(String.format("Bytes per cancelled delay: %s %.0f allocated %.0f retained, %s %.0f allocated %.0f retained", DelayImpl.class.getSimpleName(),
+        delayImplBytes / (double) count, delayImplRetained / (double) count, TimerWheelDelay.class.getSimpleName(), timerWheelBytes / (double) count,
+        timerWheelRetained / (double) count));
+    assertTrue(timerWheelBytes < delayImplBytes);
+    _delay.dispose();
+    assertEquals(0, _delay.wheelCount());
+  }
+}
@@ -0,0 +1,73 @@
+package com.github.strangefac.strange.impl;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.slf4j.Logger;
+import com.github.strangefac.strange.PrivateActor;
+import com.github.strangefac.strange.SFuture;
+import com.github.strangefac.strange.SyncException;
+import com.github.strangefac.strange.Task;
+import com.github.strangefac.strange.Wrapper;
+
+/** An {@link SFuture} from outside strange, that implements only the abstract methods so that it gets the defaults. */
+class ForeignSFuture<V, E extends Throwable> implements SFuture<V, E> {
+  private final SFutureImpl<V, E> _delegate = new SFutureImpl<>();
+
+  public void putCancelled() throws IllegalStateException {
+    _delegate.putCancelled();
+  }
+
+  public void putValue(V value) throws IllegalStateException {
+    _delegate.putValue(value);
+  }
+
+  public void putCauseOfInvocationTargetException(E checkedThrowable) throws IllegalStateException {
+    _delegate.putCauseOfInvocationTargetException(checkedThrowable);
+  }
+
+  public void putCauseOfExecutionException(Throwable throwable) throws IllegalStateException {
+    _delegate.putCauseOfExecutionException(throwable);
+  }
+
+  public <W, F extends Throwable> void postAfterDone(PrivateActor actor, Task<? extends W, ? extends F> taskImpl, Wrapper<W, F> wrapper) {
+    _delegate.postAfterDone(actor, taskImpl, wrapper);
+  }
+
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    return _delegate.cancel(mayInterruptIfRunning);
+  }
+
+  public boolean isCancelled() {
+    return _delegate.isCancelled();
+  }
+
+  public boolean isDone() {
+    return _delegate.isDone();
+  }
+
+  public V get() throws InterruptedException, ExecutionException {
+    return _delegate.get();
+  }
+
+  public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+    return _delegate.get(timeout, unit);
+  }
+
+  public void andForget(Logger log) {
+    _delegate.andForget(log);
+  }
+
+  public V sync() throws CancellationException, E, SyncException {
+    return _delegate.sync();
+  }
+
+  public V sync(double timeout) throws CancellationException, E, SyncException, TimeoutException {
+    return _delegate.sync(timeout);
+  }
+
+  public V assertDoneAndGetUninterruptibly() throws IllegalStateException, ExecutionException {
+    return _delegate.assertDoneAndGetUninterruptibly();
+  }
+}
@@ -0,0 +1,87 @@
+package com.github.strangefac.strange.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import org.slf4j.Logger;
+import com.github.strangefac.strange.Actor;
+import com.github.strangefac.strange.Delay;
+import com.github.strangefac.strange.VoidTask;
+import com.github.strangefac.strange.VoidTask8;
+import com.github.strangefac.strange.function.VoidCallable;
+
+/** A {@link Delay} whose tasks only run when the test says so. */
+class ManualDelay implements Delay {
+  class Control implements TaskControl {
+    private final double _seconds;
+    private final VoidCallable<?> _runnable;
+    private boolean _cancelled, _done;
+
+    private Control(double seconds, VoidCallable<?> runnable) {
+      _seconds = seconds;
+      _runnable = runnable;
+    }
+
+    double seconds() {
+      return _seconds;
+    }
+
+    boolean isCancelled() {
+      synchronized (ManualDelay.this) {
+        return _cancelled;
+      }
+    }
+
+    public boolean cancelOrAllow() {
+      synchronized (ManualDelay.this) {
+        if (_done || _cancelled) return false;
+        _cancelled = true;
+        _pending.remove(this);
+        return true;
+      }
+    }
+
+    public void waitFor() {
+      synchronized (ManualDelay.this) {
+        if (_cancelled) throw new CancellationException();
+        if (!_done) throw new IllegalStateException("Not fired.");
+      }
+    }
+  }
+
+  private final List<Control> _pending = new ArrayList<>();
+  private final List<Control> _all = new ArrayList<>();
+
+  public synchronized TaskControl after(double seconds, VoidCallable<?> runnable) {
+    Control control = new Control(seconds, runnable);
+    _pending.add(control);
+    _all.add(control);
+    return control;
+  }
+
+  public TaskControl after(double seconds, Actor actor, VoidTask<?> task, Logger log) {
+    throw new UnsupportedOperationException();
+  }
+
+  public TaskControl after(double seconds, Actor actor, VoidTask8<?> task, Logger log) {
+    throw new UnsupportedOperationException();
+  }
+
+  /** @return Every task so far, in the order they were added. */
+  synchronized List<Control> all() {
+    return new ArrayList<>(_all);
+  }
+
+  /** Runs the pending tasks on this thread. */
+  void fire() throws Exception {
+    List<Control> due;
+    synchronized (this) {
+      due = new ArrayList<>(_pending);
+      _pending.clear();
+      for (Control control : due)
+        control._done = true;
+    }
+    for (Control control : due)
+      control._runnable.call();
+  }
+}
@@ -147,17 +147,17 @@ public class TestActorInvocationHandler {
 
   @Test
   public void badMethods() {
-    also(catchThrowableOfType(() -> new ActorInvocationHandler<BadB, VoidCheckedException>(null, new TargetClass<>(BadBTarget.class), null, _threadCollection), BadActorMethodException.class), e -> {
+    also(catchThrowableOfType(() -> new ActorInvocationHandler<BadB, VoidCheckedException>(null, new TargetClass<>(BadBTarget.class), null, _threadCollection, null, null), BadActorMethodException.class), e -> {
       // Reflection doesn't claim any iteration order, so it could be either:
       assertTrue(also(new THashSet<>(), it -> {
         it.add(new BadActorMethodException(true, Legacy.class, new SignatureInfo("legacy2")).getMessage());
         it.add(new BadActorMethodException(true, Legacy.class, new SignatureInfo("legacy3")).getMessage());
       }).contains(e.getMessage()));
     });
-    also(catchThrowableOfType(() -> new ActorInvocationHandler<NotQuiteFixedB, VoidCheckedException>(null, new TargetClass<>(NotQuiteFixedBTarget.class), null, _threadCollection), BadActorMethodException.class), e -> {
+    also(catchThrowableOfType(() -> new ActorInvocationHandler<NotQuiteFixedB, VoidCheckedException>(null, new TargetClass<>(NotQuiteFixedBTarget.class), null, _threadCollection, null, null), BadActorMethodException.class), e -> {
       assertEquals(new BadActorMethodException(true, Legacy.class, new SignatureInfo("legacy3")).getMessage(), e.getMessage());
     });
-    also(catchThrowableOfType(() -> new ActorInvocationHandler<LegacyBadA, VoidCheckedException>(null, new TargetClass<>(LegacyBadATarget.class), null, _threadCollection), BadActorMethodException.class), e -> {
+    also(catchThrowableOfType(() -> new ActorInvocationHandler<LegacyBadA, VoidCheckedException>(null, new TargetClass<>(LegacyBadATarget.class), null, _threadCollection, null, null), BadActorMethodException.class), e -> {
       assertEquals(new BadActorMethodException(false, BadA.class, new SignatureInfo("legacy2")).getMessage(), e.getMessage());
     });
   }
@@ -165,7 +165,7 @@ public class TestActorInvocationHandler {
   @Test
   public void legacyMethodsWorks() {
     Logger log = LoggerFactory.getLogger(TestActorInvocationHandler.class);
-    THashSet<SignatureKey> legacySignatureKeys = new THashSet<>(new ActorInvocationHandler<FixedB, VoidCheckedException>(log, new TargetClass<>(FixedBTarget.class), null, _threadCollection).legacySignatureKeysForTestingOnly());
+    THashSet<SignatureKey> legacySignatureKeys = new THashSet<>(new ActorInvocationHandler<FixedB, VoidCheckedException>(log, new TargetClass<>(FixedBTarget.class), null, _threadCollection, null, null).legacySignatureKeysForTestingOnly());
     assertTrue(legacySignatureKeys.remove(new SignatureKey("legacy")));
     assertTrue(legacySignatureKeys.remove(new SignatureKey("legacy2")));
     assertTrue(legacySignatureKeys.remove(new SignatureKey("legacy3")));
@@ -174,6 +174,6 @@ public class TestActorInvocationHandler {
 
   @Test
   public void legacyMethodsEfficiency() {
-    assertSame(Collections.emptySet(), new ActorInvocationHandler<Actor, VoidCheckedException>(null, new TargetClass<>(PlainTarget.class), null, _threadCollection).legacySignatureKeysForTestingOnly());
+    assertSame(Collections.emptySet(), new ActorInvocationHandler<Actor, VoidCheckedException>(null, new TargetClass<>(PlainTarget.class), null, _threadCollection, null, null).legacySignatureKeysForTestingOnly());
   }
 }
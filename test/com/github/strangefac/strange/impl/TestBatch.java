@@ -2,15 +2,22 @@ package com.github.strangefac.strange.impl;
 
 import static com.github.strangefac.strange.util.Standard.also;
 import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
 import static org.easymock.EasyMock.anyObject;
 import static org.easymock.EasyMock.expect;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.junit.Rule;
 import org.junit.Test;
 import org.slf4j.ILoggerFactory;
@@ -19,6 +26,7 @@ import com.github.strangefac.strange.Actor;
 import com.github.strangefac.strange.ActorTarget;
 import com.github.strangefac.strange.AllActors;
 import com.github.strangefac.strange.Batch;
+import com.github.strangefac.strange.LingerDelayType;
 import com.github.strangefac.strange.SFuture;
 import com.github.strangefac.strange.Syncable;
 import com.github.strangefac.strange.ThreadCollectionType;
@@ -33,7 +41,10 @@ import com.github.strangefac.strange.util.EasyMockRule;
 import gnu.trove.map.hash.THashMap;
 
 public class TestBatch {
+  private static final long LINGER_MILLIS = 500;
+
   @ThreadCollectionType(ManualThreadCollection.class)
+  @LingerDelayType(ManualDelay.class)
   public static class MyTarget implements ActorTarget<MyTarget.MyActor> {
     public interface MyActor extends Actor {
       @Batch
@@ -41,6 +52,18 @@ public class TestBatch {
 
       @Batch
       SFuture<Map<Object, Syncable<Double, IOException>>, VoidCheckedException> multipleOutcomes(Object callId, IOException fail, Double ifNotFail);
+
+      @Batch
+      Future<String> record(long time, double value, char unit);
+
+      @Batch(maxSize = 3, lingerMillis = LINGER_MILLIS)
+      Future<String> linger(int i);
+
+      @Batch(scatter = true)
+      SFuture<String, IOException> lookup(String key);
+
+      @Batch(scatter = true)
+      Future<Integer> lengths(String s, boolean wrongSize);
     }
 
     public void init(MyActor actor) {
@@ -60,13 +83,59 @@ public class TestBatch {
           outcomes.put(callIds[i], null != fails[i] ? new AbruptSyncable<>(fails[i]) : new NormalSyncable<>(ifNotFails[i]));
       });
     }
+
+    public List<Object> lookup(String[] keys) {
+      return also(new ArrayList<>(), results -> {
+        for (String key : keys)
+          results.add(key.isEmpty() ? new AbruptSyncable<>(new EOFException()) : key.toUpperCase());
+      });
+    }
+
+    public int[] lengths(String[] ss, boolean[] wrongSizes) {
+      int[] lengths = new int[wrongSizes[0] ? ss.length + 1 : ss.length];
+      for (int i = 0; i < ss.length; ++i)
+        lengths[i] = ss[i].length();
+      return lengths;
+    }
+
+    public String linger(int[] is) {
+      return also(new StringBuilder(), sb -> {
+        for (int i : is)
+          sb.append('(').append(i).append(')');
+      }).toString();
+    }
+
+    public String record(long[] times, double[] values, char[] units) {
+      return also(new StringBuilder(), sb -> {
+        for (int x = 0; x < times.length; ++x)
+          sb.append(times[x]).append('=').append(values[x]).append(units[x]).append(' ');
+      }).toString();
+    }
+  }
+
+  public interface LingerActor extends Actor {
+    @Batch(lingerMillis = LINGER_MILLIS)
+    Future<String> linger(int i);
+  }
+
+  @ThreadCollectionType(ManualThreadCollection.class)
+  public static class NoDelayTarget implements ActorTarget<LingerActor> {
+    public void init(LingerActor actor) {
+      // Do nothing.
+    }
+
+    public String linger(int[] is) {
+      return "";
+    }
   }
 
   @Rule
   public final EasyMockRule _mocks = new EasyMockRule();
   private final ManualThreadCollection _thread = new ManualThreadCollection();
+  private final ManualDelay _delay = new ManualDelay();
   private final ComponentSource _componentSource = also(_mocks.createMock(ComponentSource.class), it -> {
     expect(it.getComponent(ManualThreadCollection.class)).andReturn(_thread);
+    expect(it.getComponent(ManualDelay.class)).andReturn(_delay).anyTimes();
   });
   private final ILoggerFactory _loggerFactory = also(_mocks.createMock(ILoggerFactory.class), it -> {
     expect(it.getLogger(anyObject())).andReturn(_mocks.createMock(Logger.class)).anyTimes();
@@ -122,4 +191,106 @@ public class TestBatch {
     assertSame(eof, catchThrowable(o1::sync));
     assertEquals(5.5, o2.sync(), 0);
   }
+
+  @Test
+  public void primitivesWork() throws InterruptedException, ExecutionException {
+    StrangeImpl strange = new StrangeImpl(_componentSource, _loggerFactory, _allActors);
+    MyActor actor = strange.spawn(new MyTarget()).actor();
+    Future<String> f1 = actor.record(100, 1.5, 'm');
+    Future<String> f2 = actor.record(200, -2, 's');
+    _thread.postExitCommand();
+    _thread.enter();
+    assertEquals("100=1.5m 200=-2.0s ", f1.get());
+    assertSame(f1.get(), f2.get());
+  }
+
+  @Test
+  public void scatterWorks() throws InterruptedException, ExecutionException, IOException {
+    StrangeImpl strange = new StrangeImpl(_componentSource, _loggerFactory, _allActors);
+    MyActor actor = strange.spawn(new MyTarget()).actor();
+    SFuture<String, IOException> f1 = actor.lookup("woo");
+    SFuture<String, IOException> f2 = actor.lookup("");
+    SFuture<String, IOException> f3 = actor.lookup("yay");
+    Future<Integer> g1 = actor.lengths("woo", false);
+    Future<Integer> g2 = actor.lengths("houpla", false);
+    _thread.postExitCommand();
+    _thread.enter();
+    assertEquals("WOO", f1.sync());
+    assertEquals(EOFException.class, catchThrowable(f2::sync).getClass()); // Only that one failed.
+    assertEquals("YAY", f3.sync());
+    assertEquals(Arrays.asList(3, 6), Arrays.asList(g1.get(), g2.get()));
+  }
+
+  @Test
+  public void scatterWrongSizeFailsAll() throws InterruptedException {
+    StrangeImpl strange = new StrangeImpl(_componentSource, _loggerFactory, _allActors);
+    MyActor actor = strange.spawn(new MyTarget()).actor();
+    Future<Integer> g1 = actor.lengths("woo", true);
+    Future<Integer> g2 = actor.lengths("houpla", false);
+    _thread.postExitCommand();
+    _thread.enter();
+    for (Future<Integer> g : Arrays.asList(g1, g2))
+      assertEquals(IllegalStateException.class, catchThrowableOfType(g::get, ExecutionException.class).getCause().getClass());
+  }
+
+  @Test
+  public void lingerUntilMaxSize() throws InterruptedException, ExecutionException {
+    StrangeImpl strange = new StrangeImpl(_componentSource, _loggerFactory, _allActors);
+    MyActor actor = strange.spawn(new MyTarget()).actor();
+    Future<String> f1 = actor.linger(1);
+    _thread.postExitCommand();
+    assertEquals(2, _thread.enter()); // Init, then the drain lets go.
+    assertFalse(f1.isDone());
+    Future<String> f2 = actor.linger(2);
+    Future<String> f3 = actor.linger(3); // Fills the batch.
+    _thread.postExitCommand();
+    assertEquals(2, _thread.enter());
+    assertEquals("(1)(2)(3)", f1.get());
+    assertSame(f1.get(), f2.get());
+    assertSame(f1.get(), f3.get());
+    assertTrue(_delay.all().get(0).isCancelled()); // Doesn't keep the drain reachable.
+  }
+
+  @Test
+  public void lingerTimesOut() throws Exception {
+    StrangeImpl strange = new StrangeImpl(_componentSource, _loggerFactory, _allActors);
+    MyActor actor = strange.spawn(new MyTarget()).actor();
+    Future<String> f1 = actor.linger(1);
+    _thread.postExitCommand();
+    assertEquals(2, _thread.enter());
+    Future<String> f2 = actor.linger(2);
+    _thread.postExitCommand();
+    assertEquals(1, _thread.enter()); // Still lingering.
+    assertEquals(1, _delay.all().size());
+    double seconds = _delay.all().get(0).seconds();
+    assertTrue(seconds > 0 && seconds <= LINGER_MILLIS / 1e3);
+    Thread.sleep(LINGER_MILLIS); // The drain checks the time too, so a manual delay can't end the linger early.
+    _delay.fire();
+    _thread.postExitCommand();
+    assertEquals(2, _thread.enter()); // The timer scheduled the drain.
+    assertEquals("(1)(2)", f1.get());
+    assertSame(f1.get(), f2.get());
+  }
+
+  @Test
+  public void otherPostEndsLinger() throws InterruptedException, ExecutionException {
+    StrangeImpl strange = new StrangeImpl(_componentSource, _loggerFactory, _allActors);
+    MyActor actor = strange.spawn(new MyTarget()).actor();
+    Future<String> f1 = actor.linger(1);
+    _thread.postExitCommand();
+    assertEquals(2, _thread.enter());
+    Future<String> f2 = actor.hmm("woo", 6); // Can't join the batch, so no point waiting.
+    _thread.postExitCommand();
+    assertEquals(2, _thread.enter());
+    assertEquals("(1)", f1.get());
+    assertEquals("(woo 6)", f2.get());
+    assertTrue(_delay.all().get(0).isCancelled());
+  }
+
+  @Test
+  public void lingerNeedsDelayType() {
+    StrangeImpl strange = new StrangeImpl(_componentSource, _loggerFactory, _allActors);
+    strange.spawn(new MyTarget());
+    assertTrue(catchThrowableOfType(() -> strange.spawn(new NoDelayTarget()), IllegalArgumentException.class).getMessage().contains("LingerDelayType"));
+  }
 }
@@ -0,0 +1,92 @@
+package com.github.strangefac.strange.impl;
+
+import static com.github.strangefac.strange.util.Standard.also;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Rule;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import com.github.strangefac.strange.Actor;
+import com.github.strangefac.strange.ActorTarget;
+import com.github.strangefac.strange.AllActors;
+import com.github.strangefac.strange.SFuture;
+import com.github.strangefac.strange.ThreadCollectionType;
+import com.github.strangefac.strange.function.VoidCheckedException;
+import com.github.strangefac.strange.util.ComponentSource;
+import com.github.strangefac.strange.util.EasyMockRule;
+
+public class TestCompletionStage {
+  public interface MyActor extends Actor {
+    SFuture<String, VoidCheckedException> fetch(CompletableFuture<String> response);
+
+    SFuture<String, VoidCheckedException> fetchBoth(CompletableFuture<String> a, CompletableFuture<String> b);
+  }
+
+  @ThreadCollectionType(ManualThreadCollection.class)
+  public static class MyTarget implements ActorTarget<MyActor> {
+    public void init(MyActor actor) {
+      // Do nothing.
+    }
+
+    public String fetch(CompletableFuture<String> response) throws DelegatingSuspension {
+      throw new DelegatingSuspension(SFutureImpl.fromCompletionStage(response.thenApply(String::toUpperCase)));
+    }
+
+    public String fetchBoth(CompletableFuture<String> a, CompletableFuture<String> b) throws JoinSuspension {
+      throw new JoinSuspension.NotVoid(Arrays.asList(SFutureImpl.<String, VoidCheckedException> fromCompletionStage(a), SFutureImpl.<String, VoidCheckedException> fromCompletionStage(b)), join -> {
+        StringBuilder sb = new StringBuilder();
+        for (SFuture<String, VoidCheckedException> f : join)
+          sb.append(f.sync());
+        return sb.toString();
+      });
+    }
+  }
+
+  @Rule
+  public final EasyMockRule _mocks = new EasyMockRule();
+  private final ManualThreadCollection _thread = new ManualThreadCollection();
+  private final ComponentSource _componentSource = also(_mocks.createMock(ComponentSource.class), it -> {
+    expect(it.getComponent(ManualThreadCollection.class)).andReturn(_thread);
+  });
+  private final AllActors _allActors = also(_mocks.createMock(AllActors.class), it -> {
+    it.purgeAndAdd(anyObject());
+    expectLastCall().anyTimes();
+  });
+
+  private int drain() throws InterruptedException {
+    _thread.postExitCommand();
+    return _thread.enter();
+  }
+
+  @Test
+  public void actorResumesOnItsOwnMailbox() throws Throwable {
+    _mocks.replay();
+    MyActor actor = new StrangeImpl(_componentSource, LoggerFactory.getILoggerFactory(), _allActors).spawn(new MyTarget()).actor();
+    CompletableFuture<String> response = new CompletableFuture<>();
+    CompletableFuture<String> result = actor.fetch(response).toCompletableFuture();
+    assertEquals(2, drain()); // Init, then fetch suspends.
+    assertFalse(result.isDone());
+    response.complete("woo"); // As if by a driver thread, which just posts to the actor.
+    assertFalse(result.isDone());
+    drain(); // The resume.
+    assertEquals("WOO", result.getNow(null));
+  }
+
+  @Test
+  public void joinWorks() throws Throwable {
+    _mocks.replay();
+    MyActor actor = new StrangeImpl(_componentSource, LoggerFactory.getILoggerFactory(), _allActors).spawn(new MyTarget()).actor();
+    CompletableFuture<String> a = new CompletableFuture<>(), b = new CompletableFuture<>();
+    SFuture<String, VoidCheckedException> result = actor.fetchBoth(a, b);
+    assertEquals(2, drain());
+    b.complete("y");
+    a.complete("x");
+    drain();
+    assertEquals("xy", result.sync());
+  }
+}
@@ -0,0 +1,96 @@
+package com.github.strangefac.strange.impl;
+
+import static com.github.strangefac.strange.util.Standard.also;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import com.github.strangefac.strange.Actor;
+import com.github.strangefac.strange.ActorTarget;
+import com.github.strangefac.strange.AllActors;
+import com.github.strangefac.strange.SFuture;
+import com.github.strangefac.strange.ThreadCollectionType;
+import com.github.strangefac.strange.function.VoidCheckedException;
+import com.github.strangefac.strange.util.ComponentSource;
+import com.github.strangefac.strange.util.EasyMockRule;
+
+public class TestContinuation {
+  public interface MyActor extends Actor {
+    SFuture<String, IOException> produce(String s);
+
+    SFuture<Void, VoidCheckedException> consume(String s);
+  }
+
+  @ThreadCollectionType(ManualThreadCollection.class)
+  public static class MyTarget implements ActorTarget<MyActor> {
+    private final List<String> _consumed = new ArrayList<>();
+
+    public void init(MyActor actor) {
+      // Do nothing.
+    }
+
+    public String produce(String s) throws IOException {
+      if (s.isEmpty()) throw new IOException("Nothing to produce.");
+      return s.toUpperCase();
+    }
+
+    public void consume(String s) {
+      _consumed.add(s);
+    }
+  }
+
+  @Rule
+  public final EasyMockRule _mocks = new EasyMockRule();
+  private final ManualThreadCollection _thread = new ManualThreadCollection();
+  private final ComponentSource _componentSource = also(_mocks.createMock(ComponentSource.class), it -> {
+    expect(it.getComponent(ManualThreadCollection.class)).andReturn(_thread);
+  });
+  private final AllActors _allActors = also(_mocks.createMock(AllActors.class), it -> {
+    it.purgeAndAdd(anyObject());
+    expectLastCall().anyTimes();
+  });
+
+  private void drain() throws InterruptedException {
+    _thread.postExitCommand();
+    _thread.enter();
+  }
+
+  @Test
+  public void pipelineAcrossActors() throws Throwable {
+    _mocks.replay();
+    StrangeImpl strange = new StrangeImpl(_componentSource, LoggerFactory.getILoggerFactory(), _allActors);
+    MyTarget producerTarget = new MyTarget(), consumerTarget = new MyTarget();
+    MyActor producer = strange.spawn(producerTarget).actor(), consumer = strange.spawn(consumerTarget).actor();
+    SFuture<Integer, IOException> done = producer.produce("woo").thenPostTo(consumer, f -> {
+      String s = f.sync(); // Doesn't block.
+      consumer.consume(s);
+      return s.length();
+    });
+    SFuture<Integer, IOException> failed = producer.produce("").thenPostTo(consumer, f -> f.sync().length());
+    assertFalse(done.isDone());
+    drain();
+    assertEquals(Integer.valueOf(3), done.sync());
+    assertEquals(Arrays.asList("WOO"), consumerTarget._consumed);
+    assertEquals("Nothing to produce.", catchThrowableOfType(failed::sync, IOException.class).getMessage());
+  }
+
+  @Test
+  public void foreignFutureCanBePosted() throws Throwable {
+    _mocks.replay();
+    MyActor consumer = new StrangeImpl(_componentSource, LoggerFactory.getILoggerFactory(), _allActors).spawn(new MyTarget()).actor();
+    ForeignSFuture<String, IOException> f = new ForeignSFuture<>();
+    SFuture<Integer, IOException> done = f.thenPostTo(consumer, g -> g.sync().length());
+    f.putValue("woo");
+    drain();
+    assertEquals(Integer.valueOf(3), done.sync());
+  }
+}
@@ -0,0 +1,138 @@
+package com.github.strangefac.strange.impl;
+
+import static com.github.strangefac.strange.util.Standard.also;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import com.github.strangefac.strange.Actor;
+import com.github.strangefac.strange.ActorTarget;
+import com.github.strangefac.strange.AllActors;
+import com.github.strangefac.strange.DeadActorException;
+import com.github.strangefac.strange.OneWay;
+import com.github.strangefac.strange.ThreadCollection;
+import com.github.strangefac.strange.ThreadCollectionType;
+import com.github.strangefac.strange.Throughput;
+import com.github.strangefac.strange.impl.StrangeImpl.TargetClass;
+import com.github.strangefac.strange.util.ComponentSource;
+import com.github.strangefac.strange.util.EasyMockRule;
+
+public class TestDrain {
+  public interface MyActor extends Actor {
+    @OneWay
+    void increment();
+  }
+
+  @ThreadCollectionType(ManualThreadCollection.class)
+  public static class Greedy implements ActorTarget<MyActor> {
+    int _count;
+
+    public void init(MyActor actor) {
+      // Do nothing.
+    }
+
+    public void increment() {
+      ++_count;
+    }
+  }
+
+  @Throughput(2)
+  public static class Fair extends Greedy {
+    // Nothing else.
+  }
+
+  @Throughput(0)
+  public static class Bad extends Greedy {
+    // Nothing else.
+  }
+
+  @Rule
+  public final EasyMockRule _mocks = new EasyMockRule();
+  private final ManualThreadCollection _thread = new ManualThreadCollection();
+  private final ComponentSource _componentSource = also(_mocks.createMock(ComponentSource.class), it -> {
+    expect(it.getComponent(ManualThreadCollection.class)).andReturn(_thread).anyTimes();
+  });
+  private final AllActors _allActors = also(_mocks.createMock(AllActors.class), it -> {
+    it.purgeAndAdd(anyObject());
+    expectLastCall().anyTimes();
+  });
+
+  private MyActor spawn(Greedy target) {
+    MyActor actor = new StrangeImpl(_componentSource, LoggerFactory.getILoggerFactory(), _allActors).spawn(target).actor();
+    for (int i = 0; i < 4; ++i)
+      actor.increment();
+    return actor;
+  }
+
+  /** @return The number of commands executed, including the exit command. */
+  private int drain() throws InterruptedException {
+    _thread.postExitCommand();
+    return _thread.enter();
+  }
+
+  @Test
+  public void throughputWorks() throws InterruptedException {
+    _mocks.replay();
+    Fair target = new Fair();
+    MyActor actor = spawn(target);
+    assertEquals(2, drain()); // The drain was scheduled once, then rescheduled behind the exit command.
+    assertEquals(1, target._count); // Init counts towards the throughput.
+    assertEquals(3, actor.mailboxSize());
+    assertEquals(2, drain());
+    assertEquals(3, target._count);
+    assertEquals(2, drain()); // The last run found the mailbox empty, so did not reschedule.
+    assertEquals(4, target._count);
+    assertEquals(1, drain());
+  }
+
+  @Test
+  public void defaultIsToDrainTheMailbox() throws InterruptedException {
+    _mocks.replay();
+    Greedy target = new Greedy();
+    MyActor actor = spawn(target);
+    assertEquals(2, drain());
+    assertEquals(4, target._count);
+    assertEquals(0, actor.mailboxSize());
+    assertEquals(1, drain());
+  }
+
+  @Test
+  public void refusedScheduleIsRetried() throws DeadActorException, InterruptedException, NoSuchMethodException {
+    _mocks.replay();
+    boolean[] refuse = {true};
+    ThreadCollection threadCollection = command -> {
+      if (refuse[0]) throw new RejectedExecutionException();
+      _thread.execute(command);
+    };
+    Fair target = new Fair();
+    Mailbox mailbox = new Mailbox(false);
+    Drain d = new Drain(mailbox, LoggerFactory.getLogger(TestDrain.class), new TargetClass<>(Fair.class), target, threadCollection, null, null, 2);
+    SignatureInfo increment = new SignatureInfo(MyActor.class.getMethod("increment"));
+    mailbox.add(null, increment);
+    catchThrowableOfType(() -> d.schedule(increment), RejectedExecutionException.class);
+    refuse[0] = false;
+    mailbox.add(null, increment);
+    mailbox.add(null, increment);
+    d.schedule(increment); // Not stuck in the scheduled state.
+    refuse[0] = true;
+    assertEquals(2, drain()); // The reschedule for the remaining invocation was refused, which must not escape the drain.
+    assertEquals(2, target._count);
+    refuse[0] = false;
+    d.schedule(increment);
+    assertEquals(2, drain());
+    assertEquals(3, target._count);
+  }
+
+  @Test
+  public void throughputMustBePositive() {
+    _mocks.replay();
+    assertTrue(catchThrowable(() -> spawn(new Bad())).getMessage().contains("Throughput"));
+  }
+}
@@ -0,0 +1,162 @@
+package com.github.strangefac.strange.impl;
+
+import static com.github.strangefac.strange.util.Standard.also;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.UndeclaredThrowableException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import com.github.strangefac.strange.Actor;
+import com.github.strangefac.strange.ActorTarget;
+import com.github.strangefac.strange.AllActors;
+import com.github.strangefac.strange.GeneratedProxy;
+import com.github.strangefac.strange.SFuture;
+import com.github.strangefac.strange.ThreadCollectionType;
+import com.github.strangefac.strange.function.VoidCheckedException;
+import com.github.strangefac.strange.pool.CustomThreadPoolThreadCollection;
+import com.github.strangefac.strange.util.ComponentSource;
+import com.github.strangefac.strange.util.EasyMockRule;
+
+public class TestGeneratedProxy {
+  public interface Legacy {
+    long sum(byte b, short s, char c, int i, long l, float f, double d);
+
+    boolean not(boolean b);
+
+    void fail(String message) throws IOException;
+
+    String[] split(String s);
+
+    /** Doesn't declare the checked exception of the target. */
+    void failUndeclared(String message);
+  }
+
+  public interface GeneratedActor extends Actor, Legacy {
+    SFuture<String, VoidCheckedException> concat(String s, int i);
+
+    SFuture<Void, IOException> failAsync(String message);
+  }
+
+  @ThreadCollectionType(CustomThreadPoolThreadCollection.class)
+  @GeneratedProxy
+  public static class Generated implements ActorTarget<GeneratedActor> {
+    public void init(GeneratedActor actor) {
+      // Do nothing.
+    }
+
+    public long sum(byte b, short s, char c, int i, long l, float f, double d) {
+      return b + s + c + i + l + (long) f + (long) d;
+    }
+
+    public boolean not(boolean b) {
+      return !b;
+    }
+
+    public void fail(String message) throws IOException {
+      throw new IOException(message);
+    }
+
+    public String[] split(String s) {
+      return s.split(",");
+    }
+
+    public String concat(String s, int i) {
+      return s + i;
+    }
+
+    public void failAsync(String message) throws IOException {
+      throw new IOException(message);
+    }
+
+    public void failUndeclared(String message) throws IOException {
+      throw new IOException(message);
+    }
+  }
+
+  private interface HiddenActor extends Actor {
+    SFuture<Void, VoidCheckedException> hello();
+  }
+
+  @ThreadCollectionType(CustomThreadPoolThreadCollection.class)
+  @GeneratedProxy
+  private static class Hidden implements ActorTarget<HiddenActor> {
+    public void init(HiddenActor actor) {
+      // Do nothing.
+    }
+
+    @SuppressWarnings("unused")
+    public void hello() {
+      // Do nothing.
+    }
+  }
+
+  @Rule
+  public final EasyMockRule _mocks = new EasyMockRule();
+  private final CustomThreadPoolThreadCollection _pool = new CustomThreadPoolThreadCollection(10000, 0);
+  private StrangeImpl _strange;
+
+  @Before
+  public void setUp() {
+    ComponentSource componentSource = also(_mocks.createMock(ComponentSource.class), it -> expect(it.getComponent(CustomThreadPoolThreadCollection.class)).andReturn(_pool));
+    AllActors allActors = also(_mocks.createMock(AllActors.class), it -> {
+      it.purgeAndAdd(anyObject());
+      expectLastCall().anyTimes();
+    });
+    _mocks.replay();
+    _strange = new StrangeImpl(componentSource, LoggerFactory.getILoggerFactory(), allActors);
+  }
+
+  @After
+  public void tearDown() throws InterruptedException {
+    _pool.dispose();
+  }
+
+  @Test
+  public void generatedProxyWorks() throws Throwable {
+    GeneratedActor actor = _strange.spawn(new Generated()).sync();
+    assertFalse(Proxy.isProxyClass(actor.getClass()));
+    assertEquals(GeneratedActor.class, actor.actorInterface());
+    assertEquals(1 + 2 + 'a' + 4 + 5 + 6 + 7, actor.sum((byte) 1, (short) 2, 'a', 4, 5, 6.5f, 7.5));
+    assertEquals(false, actor.not(true));
+    assertEquals("abc1", actor.concat("abc", 1).sync());
+    assertEquals("x", catchThrowableOfType(() -> actor.fail("x"), IOException.class).getMessage());
+    assertEquals("y", catchThrowableOfType(actor.failAsync("y")::sync, IOException.class).getMessage());
+    assertEquals("z", catchThrowableOfType(() -> actor.failUndeclared("z"), UndeclaredThrowableException.class).getCause().getMessage());
+    assertEquals(2, actor.split("a,b").length);
+    assertEquals(0, actor.mailboxSize());
+    assertSame("ok", actor.post(() -> "ok").sync());
+    assertTrue(actor.equals(actor));
+    assertEquals(System.identityHashCode(actor), actor.hashCode());
+    assertTrue(actor.toString().startsWith(GeneratedActor.class.getName() + "Impl@"));
+    assertNotEquals(actor, _strange.spawn(new Generated()).sync());
+  }
+
+  @Test
+  public void boundMethodsCannotBeReplaced() throws Throwable {
+    Field[] fields = _strange.spawn(new Generated()).sync().getClass().getDeclaredFields();
+    assertTrue(fields.length > 1);
+    for (Field field : fields)
+      assertTrue(field.getName(), Modifier.isPrivate(field.getModifiers()) && Modifier.isFinal(field.getModifiers()));
+  }
+
+  @Test
+  public void fallBackToProxy() throws Throwable {
+    HiddenActor actor = _strange.spawn(new Hidden()).sync();
+    assertTrue(Proxy.isProxyClass(actor.getClass()));
+    actor.hello().sync();
+  }
+}
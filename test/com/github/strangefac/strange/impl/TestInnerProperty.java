@@ -4,6 +4,7 @@ import static com.github.strangefac.strange.util.Standard.also;
 import static org.easymock.EasyMock.expect;
 import static org.junit.Assert.assertEquals;
 import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 import org.junit.Rule;
 import org.junit.Test;
@@ -31,12 +32,17 @@ public class TestInnerProperty {
   @ThreadCollectionType(ManualThreadCollection.class)
   public static class My implements ActorTarget<MyActor> {
     public class Text implements Supplier<String> {
+      public Text() {
+        _accessorCount.incrementAndGet();
+      }
+
       public String get() {
         return _text;
       }
     }
 
     private final String _text;
+    private final AtomicInteger _accessorCount = new AtomicInteger();
 
     My(String text) {
       _text = text;
@@ -85,4 +91,16 @@ public class TestInnerProperty {
   public void works2() throws InterruptedException {
     worksImpl(new My2("hello2"), "hello2");
   }
+
+  @Test
+  public void accessorIsCreatedAtSpawn() {
+    ComponentSource componentSource = also(_mocks.createMock(ComponentSource.class), it -> expect(it.getComponent(ManualThreadCollection.class)).andReturn(new ManualThreadCollection()));
+    _mocks.replay();
+    My myTarget = new My("hello");
+    MyActor my = new StrangeImpl(componentSource, LoggerFactory.getILoggerFactory(), new AllActorsImpl()).spawn(myTarget).actor();
+    assertEquals(1, myTarget._accessorCount.get());
+    assertEquals("hello", my.text());
+    assertEquals("hello", my.text());
+    assertEquals(1, myTarget._accessorCount.get());
+  }
 }
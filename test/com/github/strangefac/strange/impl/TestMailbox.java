@@ -9,8 +9,14 @@ import static org.assertj.core.api.Assertions.catchThrowableOfType;
 import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -23,10 +29,13 @@ import org.slf4j.Logger;
 import com.github.strangefac.strange.Actor;
 import com.github.strangefac.strange.ActorTarget;
 import com.github.strangefac.strange.Batch;
+import com.github.strangefac.strange.Conflate;
 import com.github.strangefac.strange.DeadActorException;
 import com.github.strangefac.strange.DwellInfo;
 import com.github.strangefac.strange.MailboxElement;
 import com.github.strangefac.strange.SFuture;
+import com.github.strangefac.strange.Task;
+import com.github.strangefac.strange.Wrapper;
 import com.github.strangefac.strange.function.VoidCheckedException;
 import com.github.strangefac.strange.impl.Mailbox;
 import com.github.strangefac.strange.impl.SignatureInfo;
@@ -39,7 +48,16 @@ public class TestMailbox implements ActorTarget<TestMailbox.TestMailboxActor> {
     @Batch
     SFuture<String, VoidCheckedException> batched(String part);
 
+    @Batch(reorder = true)
+    SFuture<String, VoidCheckedException> gathered(String part);
+
     SFuture<Void, InterruptedException> countDownAndSleep(CountDownLatch taskRunning);
+
+    @Conflate
+    SFuture<String, VoidCheckedException> latest(String value);
+
+    @Conflate(key = 0)
+    SFuture<String, VoidCheckedException> progress(String task, int percent);
   }
 
   @Rule
@@ -47,18 +65,28 @@ public class TestMailbox implements ActorTarget<TestMailbox.TestMailboxActor> {
   private final Logger _log = _mocks.createMock(Logger.class);
 
   private static List<MailboxElement> jumpQueue(Collection<? extends MailboxElement> array, MailboxElement element) {
-    return also(new Invocations<>(), it -> {
-      it.addAll(array);
+    Invocations<MailboxElement> invocations = also(new Invocations<>(), it -> {
+      for (MailboxElement e : array) {
+        if (e.jumpQueue())
+          it.jumpQueue(e);
+        else
+          it.add(e);
+      }
       it.jumpQueue(element);
     });
+    return also(new ArrayList<>(), it -> invocations.forEach(it::add));
+  }
+
+  private MailboxElement element(boolean jumpQueue, boolean patient) {
+    return also(_mocks.createMock(MailboxElement.class), it -> {
+      expect(it.jumpQueue()).andReturn(jumpQueue).anyTimes();
+      expect(it.patient()).andReturn(patient).anyTimes();
+    });
   }
 
   @Test
   public void jumpQueueWorks() {
-    MailboxElement i1 = also(_mocks.createMock(MailboxElement.class), it -> expect(it.jumpQueue()).andReturn(false).anyTimes());
-    MailboxElement i2 = _mocks.createMock(MailboxElement.class);
-    MailboxElement jq1 = also(_mocks.createMock(MailboxElement.class), it -> expect(it.jumpQueue()).andReturn(true).anyTimes());
-    MailboxElement jq2 = _mocks.createMock(MailboxElement.class);
+    MailboxElement i1 = element(false, false), i2 = element(false, false), jq1 = element(true, false), jq2 = element(true, false);
     _mocks.replay();
     // Start empty:
     assertEquals(Arrays.asList(jq1), jumpQueue(Collections.emptySet(), jq1));
@@ -69,8 +97,40 @@ public class TestMailbox implements ActorTarget<TestMailbox.TestMailboxActor> {
     // Start with 2 ordinary items:
     assertEquals(Arrays.asList(jq1, i1, i2), jumpQueue(Arrays.asList(i1, i2), jq1));
     assertEquals(Arrays.asList(jq1, jq2, i1, i2), jumpQueue(Arrays.asList(jq1, i1, i2), jq2));
-    // Not possible in practice:
-    assertEquals(Arrays.asList(jq2, i1, jq1), jumpQueue(Arrays.asList(i1, jq1), jq2));
+  }
+
+  @Test
+  public void countsWork() {
+    MailboxElement i = element(false, true), impatient = element(false, false), jq = element(true, true);
+    _mocks.replay();
+    Invocations<MailboxElement> invocations = new Invocations<>();
+    invocations.add(i);
+    invocations.add(impatient);
+    invocations.jumpQueue(jq);
+    assertEquals(3, invocations.size());
+    assertEquals(1, invocations.jumpQueueCount());
+    assertEquals(1, invocations.impatientCount());
+    assertEquals(jq, invocations.removeFirst());
+    assertEquals(0, invocations.jumpQueueCount());
+    assertEquals(1, invocations.impatientCount());
+    assertEquals(i, invocations.removeFirst());
+    assertEquals(true, invocations.hasImpatient());
+    assertEquals(impatient, invocations.removeFirst());
+    assertEquals(false, invocations.hasImpatient());
+    assertEquals(true, invocations.isEmpty());
+  }
+
+  @Test
+  public void dwellInfoHasCounts() throws DeadActorException {
+    _mocks.replay();
+    Mailbox m = new Mailbox(false);
+    m.add(null, new SignatureInfo(false, false, false, false, null, null, true, "patient"));
+    m.add(null, new SignatureInfo(false, false, false, false, null, null, false, "impatient"));
+    m.add(null, new SignatureInfo(false, false, false, true, null, null, false, "jumpQueue"));
+    DwellInfo dwellInfo = m.getDwellInfo();
+    assertEquals(3, dwellInfo.mailboxSize());
+    assertEquals(1, dwellInfo.jumpQueueCount());
+    assertEquals(2, dwellInfo.impatientCount());
   }
 
   @Test
@@ -96,6 +156,103 @@ public class TestMailbox implements ActorTarget<TestMailbox.TestMailboxActor> {
     }).toString();
   }
 
+  public String gathered(String[] parts) {
+    return batched(parts);
+  }
+
+  /** @return The batch size. */
+  private int loadAndRun(Mailbox q, int maxBatchSize) throws DeadActorException {
+    InvocationLite invocation = q.load(_log, new TargetClass<>(TestMailbox.class), this, maxBatchSize);
+    invocation.run();
+    int batchSize = invocation.batchSize();
+    q.unload();
+    return batchSize;
+  }
+
+  @Test
+  public void reorderedBatchGathersAcrossMailbox() throws Throwable {
+    _mocks.replay();
+    SignatureInfo g = new SignatureInfo(TestMailboxActor.class.getMethod("gathered", String.class));
+    SignatureInfo b = new SignatureInfo(TestMailboxActor.class.getMethod("batched", String.class));
+    Mailbox q = new Mailbox(false);
+    SFuture<Object, Throwable> g1 = q.add(null, g, "a");
+    SFuture<Object, Throwable> b1 = q.add(null, b, "x");
+    SFuture<Object, Throwable> g2 = q.add(null, g, "b");
+    SFuture<Object, Throwable> b2 = q.add(null, b, "y");
+    SFuture<Object, Throwable> g3 = q.add(null, g, "c");
+    SFuture<Object, Throwable> g4 = q.add(null, g, "d");
+    assertEquals(6, q.size());
+    assertEquals(3, loadAndRun(q, 3));
+    assertEquals(3, q.size());
+    assertEquals(1, loadAndRun(q, 3)); // The leftover goes first.
+    assertEquals(2, loadAndRun(q, 3)); // Now adjacent.
+    assertTrue(q.isEmpty());
+    assertEquals("abc", g1.sync());
+    assertEquals("abc", g2.sync());
+    assertEquals("abc", g3.sync());
+    assertEquals("d", g4.sync());
+    assertEquals("xy", b1.sync());
+    assertEquals("xy", b2.sync());
+    q.add(null, g, "e");
+    assertEquals(1, loadAndRun(q, 3)); // Nothing left over from before.
+  }
+
+  public String latest(String value) {
+    return value;
+  }
+
+  public String progress(String task, int percent) {
+    return task + ':' + percent;
+  }
+
+  @Test
+  public void conflateReplacesPending() throws Throwable {
+    _mocks.replay();
+    SignatureInfo l = new SignatureInfo(TestMailboxActor.class.getMethod("latest", String.class));
+    SignatureInfo b = new SignatureInfo(TestMailboxActor.class.getMethod("batched", String.class));
+    Mailbox q = new Mailbox(false);
+    SFuture<Object, Throwable> l1 = q.add(null, l, "a");
+    boolean[] cancelledUnderLock = {true};
+    l1.toCompletableFuture().whenComplete((value, throwable) -> cancelledUnderLock[0] = Thread.holdsLock(q));
+    SFuture<Object, Throwable> b1 = q.add(null, b, "x");
+    SFuture<Object, Throwable> l2 = q.add(null, l, "b");
+    assertEquals(2, q.size());
+    assertTrue(l1.isCancelled());
+    assertFalse(cancelledUnderLock[0]);
+    assertEquals(1, loadAndRun(q, 1));
+    assertEquals("b", l2.sync()); // In the place of the replaced invocation.
+    assertFalse(b1.isDone());
+    assertEquals(1, loadAndRun(q, 1));
+    assertEquals("x", b1.sync());
+    // An invocation that has been loaded is no longer pending:
+    SFuture<Object, Throwable> l3 = q.add(null, l, "c");
+    InvocationLite invocation = q.load(_log, new TargetClass<>(TestMailbox.class), this, 1);
+    SFuture<Object, Throwable> l4 = q.add(null, l, "d");
+    assertEquals(1, q.size());
+    invocation.run();
+    q.unload();
+    assertEquals(1, loadAndRun(q, 1));
+    assertEquals("c", l3.sync());
+    assertEquals("d", l4.sync());
+  }
+
+  @Test
+  public void conflateKeyWorks() throws Throwable {
+    _mocks.replay();
+    SignatureInfo s = new SignatureInfo(TestMailboxActor.class.getMethod("progress", String.class, int.class));
+    Mailbox q = new Mailbox(false);
+    SFuture<Object, Throwable> a1 = q.add(null, s, "a", 1);
+    SFuture<Object, Throwable> b1 = q.add(null, s, "b", 1);
+    SFuture<Object, Throwable> a2 = q.add(null, s, "a", 2);
+    assertEquals(2, q.size());
+    assertTrue(a1.isCancelled());
+    assertEquals(1, loadAndRun(q, 1));
+    assertEquals("a:2", a2.sync());
+    assertFalse(b1.isDone());
+    assertEquals(1, loadAndRun(q, 1));
+    assertEquals("b:1", b1.sync());
+  }
+
   @Test
   public void curtailedBatchesDoNotShareWrapper() throws Throwable {
     _mocks.replay();
@@ -127,6 +284,8 @@ public class TestMailbox implements ActorTarget<TestMailbox.TestMailboxActor> {
     // Observe asymmetry with size() method, trivial stats are suitable for monitoring:
     assertEquals(0, dwellInfo.mailboxSize());
     assertEquals(0, dwellInfo.dwellNanos(System.nanoTime()));
+    assertEquals(0, dwellInfo.jumpQueueCount());
+    assertEquals(0, dwellInfo.impatientCount());
   }
 
   public void countDownAndSleep(CountDownLatch taskRunning) throws InterruptedException {
@@ -143,7 +302,7 @@ public class TestMailbox implements ActorTarget<TestMailbox.TestMailboxActor> {
     SFuture<Object, Throwable> f = m.add(null, new SignatureInfo(TestMailboxActor.class.getMethod("countDownAndSleep", CountDownLatch.class)), taskRunning);
     Thread thread = new Thread(() -> {
       try {
-        m.load(_log, new TargetClass<>(TestMailbox.class), TestMailbox.this, 1).run(); // It's a FutureTask so run should complete normally.
+        m.load(_log, new TargetClass<>(TestMailbox.class), TestMailbox.this, 1).run(); // Like a FutureTask, run should complete normally.
       } catch (DeadActorException e) {
         throw new RuntimeException(e);
       }
@@ -174,6 +333,68 @@ public class TestMailbox implements ActorTarget<TestMailbox.TestMailboxActor> {
     assertTrue(g.isCancelled());
   }
 
+  /** Stands in for a fire-and-forget caller. */
+  private static final Wrapper<Object, RuntimeException> IGNORE_WRAPPER = new Wrapper<Object, RuntimeException>() {
+    public void putCancelled() {
+      // Do nothing.
+    }
+
+    public void putValue(Object value) {
+      // Do nothing.
+    }
+
+    public void putCauseOfInvocationTargetException(RuntimeException checkedThrowable) {
+      // Do nothing.
+    }
+
+    public void putCauseOfExecutionException(Throwable throwable) {
+      // Do nothing.
+    }
+  };
+  private static final SignatureInfo PRIVATE_POST_TASK_SIGNATURE_INFO = new SignatureInfo("post", Task.class, Wrapper.class);
+
+  @Test
+  public void envelopesAreRecycled() throws DeadActorException {
+    _mocks.replay();
+    Mailbox m = new Mailbox(false);
+    Task<Object, RuntimeException> task = () -> null;
+    m.add(null, PRIVATE_POST_TASK_SIGNATURE_INFO, task, IGNORE_WRAPPER);
+    InvocationLite invocation = m.load(_log, null, null, 1);
+    invocation.run();
+    m.unload();
+    m.add(null, PRIVATE_POST_TASK_SIGNATURE_INFO, task, IGNORE_WRAPPER);
+    assertSame(invocation, m.load(_log, null, null, 1));
+  }
+
+  private static void postAndRun(Mailbox m, Object[] args, int count) throws DeadActorException {
+    for (int i = 0; i < count; ++i) {
+      m.add(null, PRIVATE_POST_TASK_SIGNATURE_INFO, args);
+      m.load(null, null, null, 1).run();
+      m.unload();
+    }
+  }
+
+  /**
+   * Only covers the mailbox part of the path: a real post also goes through the proxy, which allocates the args array, and the handler, and is run by a
+   * drain on another thread.
+   */
+  @Test
+  public void fireAndForgetPostsDoNotAllocate() throws DeadActorException {
+    _mocks.replay();
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    assumeTrue(bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported());
+    com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) bean;
+    allocations.setThreadAllocatedMemoryEnabled(true);
+    Mailbox m = new Mailbox(false);
+    Object[] args = { (Task<Object, RuntimeException>) () -> null, IGNORE_WRAPPER }; // Allocated by the proxy in real life.
+    int count = 100000;
+    postAndRun(m, args, count); // Warm up, so that we measure the steady state.
+    long threadId = Thread.currentThread().getId(), before = allocations.getThreadAllocatedBytes(threadId);
+    postAndRun(m, args, count);
+    long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+    assertTrue(allocated + " bytes", allocated < count); // Not even a byte per post, the slack is for the measurement itself.
+  }
+
   public void init(TestMailboxActor actor) {
     // Do nothing.
   }
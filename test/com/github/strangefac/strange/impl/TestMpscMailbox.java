@@ -0,0 +1,309 @@
+package com.github.strangefac.strange.impl;
+
+import static com.github.strangefac.strange.impl.InvocationInfo.REJECTING_FORMAT;
+import static com.github.strangefac.strange.impl.Mailbox.DEAD_ACTOR_MESSAGE;
+import static com.github.strangefac.strange.impl.TestSFutureImpl.keyEq;
+import static com.github.strangefac.strange.util.Standard.also;
+import static com.github.strangefac.strange.util.Standard.repeat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Rule;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.github.strangefac.strange.Actor;
+import com.github.strangefac.strange.ActorTarget;
+import com.github.strangefac.strange.Batch;
+import com.github.strangefac.strange.Conflate;
+import com.github.strangefac.strange.DeadActorException;
+import com.github.strangefac.strange.DwellInfo;
+import com.github.strangefac.strange.JumpQueue;
+import com.github.strangefac.strange.LockFreeMailbox;
+import com.github.strangefac.strange.MailboxElement;
+import com.github.strangefac.strange.SFuture;
+import com.github.strangefac.strange.ThreadCollectionType;
+import com.github.strangefac.strange.function.VoidCheckedException;
+import com.github.strangefac.strange.impl.MpscMailbox.Lane;
+import com.github.strangefac.strange.impl.StrangeImpl.TargetClass;
+import com.github.strangefac.strange.pool.CustomThreadPoolThreadCollection;
+import com.github.strangefac.strange.util.ComponentSource;
+import com.github.strangefac.strange.util.EasyMockRule;
+
+public class TestMpscMailbox implements ActorTarget<TestMpscMailbox.TestMpscMailboxActor> {
+  public interface TestMpscMailboxActor extends Actor {
+    SFuture<Void, VoidCheckedException> ordinary(String label);
+
+    @JumpQueue
+    SFuture<Void, VoidCheckedException> urgent(String label);
+
+    @Batch
+    SFuture<String, VoidCheckedException> batched(String part);
+  }
+
+  public interface Lingering extends Actor {
+    @Batch(maxSize = 2, lingerMillis = 3600000)
+    SFuture<String, VoidCheckedException> batched(String part);
+  }
+
+  @Rule
+  public final EasyMockRule _mocks = new EasyMockRule();
+  private final Logger _log = _mocks.createMock(Logger.class);
+  private final List<String> _labels = new ArrayList<>();
+
+  @Test
+  public void laneWorks() {
+    MailboxElement e1 = _mocks.createMock(MailboxElement.class);
+    MailboxElement e2 = _mocks.createMock(MailboxElement.class);
+    _mocks.replay();
+    Lane<MailboxElement> lane = new Lane<>();
+    assertNull(lane.peekOrNull());
+    assertNull(lane.headHintOrNull());
+    lane.offer(e1);
+    lane.offer(e2);
+    assertSame(e1, lane.headHintOrNull());
+    assertSame(e1, lane.peekOrNull());
+    assertSame(e1, lane.pollOrNull());
+    assertSame(e2, lane.pollOrNull());
+    assertNull(lane.pollOrNull());
+    assertNull(lane.headHintOrNull());
+  }
+
+  @Test
+  public void lingeringBatchWaits() throws DeadActorException, NoSuchMethodException {
+    _mocks.replay();
+    SignatureInfo batched = new SignatureInfo(Lingering.class.getMethod("batched", String.class));
+    MpscMailbox m = new MpscMailbox(false);
+    m.add(null, batched, "a");
+    assertNotNull(m.lingeringOrNull());
+    assertNull(m.load(_log, null, null, 10));
+    m.add(null, batched, "b"); // Full.
+    assertNull(m.lingeringOrNull());
+    assertEquals(2, m.load(_log, null, null, 10).batchSize());
+    m.unload();
+    m.add(null, batched, "c");
+    m.add(null, new SignatureInfo("ordinary", String.class), "x");
+    assertNull(m.lingeringOrNull()); // The batch can't grow.
+    assertEquals(1, m.load(_log, null, null, 10).batchSize());
+  }
+
+  public void ordinary(String label) {
+    _labels.add(label);
+  }
+
+  public void urgent(String label) {
+    _labels.add(label);
+  }
+
+  public String batched(String[] parts) {
+    return String.join("", parts);
+  }
+
+  private void drain(MpscMailbox m, int n) throws DeadActorException {
+    TargetClass<?> targetClass = new TargetClass<>(TestMpscMailbox.class);
+    for (int i = 0; i < n; ++i) {
+      m.load(_log, targetClass, this, 1).run();
+      m.unload();
+    }
+  }
+
+  @Test
+  public void jumpQueueWorks() throws Exception {
+    _mocks.replay();
+    SignatureInfo ordinary = new SignatureInfo(TestMpscMailboxActor.class.getMethod("ordinary", String.class));
+    SignatureInfo urgent = new SignatureInfo(TestMpscMailboxActor.class.getMethod("urgent", String.class));
+    MpscMailbox m = new MpscMailbox(false);
+    m.add(null, ordinary, "i1");
+    m.add(null, urgent, "jq1");
+    m.add(null, ordinary, "i2");
+    m.add(null, urgent, "jq2");
+    assertEquals(4, m.size());
+    assertEquals(2, m.getDwellInfo().jumpQueueCount());
+    assertEquals(4, m.getDwellInfo().impatientCount());
+    drain(m, 4);
+    assertEquals(Arrays.asList("jq1", "jq2", "i1", "i2"), _labels);
+    assertEquals(0, m.size());
+    assertEquals(0, m.getDwellInfo().impatientCount());
+  }
+
+  @Test
+  public void batchStopsAtJumpQueue() throws Throwable {
+    _mocks.replay();
+    SignatureInfo batched = new SignatureInfo(TestMpscMailboxActor.class.getMethod("batched", String.class));
+    SignatureInfo urgent = new SignatureInfo(TestMpscMailboxActor.class.getMethod("urgent", String.class));
+    MpscMailbox m = new MpscMailbox(false);
+    SFuture<Object, Throwable> w1 = m.add(null, batched, "a");
+    SFuture<Object, Throwable> w2 = m.add(null, batched, "b");
+    SFuture<Object, Throwable> w3 = m.add(null, batched, "c");
+    TargetClass<?> targetClass = new TargetClass<>(TestMpscMailbox.class);
+    InvocationLite invocation = m.load(_log, targetClass, this, 2);
+    m.add(null, urgent, "jq");
+    invocation.run();
+    m.unload();
+    assertEquals("ab", w1.sync());
+    assertEquals("ab", w2.sync());
+    drain(m, 1); // The jump-queue invocation comes before c.
+    assertEquals(Arrays.asList("jq"), _labels);
+    assertEquals(false, w3.isDone());
+    drain(m, 1);
+    assertEquals("c", w3.sync());
+  }
+
+  public void shouldNotRun() {
+    fail("Should not run.");
+  }
+
+  @Test
+  public void killCancelsPendingTasks() throws DeadActorException {
+    SignatureInfo s = new SignatureInfo(false, false, false, false, null, null, false, "shouldNotRun");
+    Logger log = _mocks.createMock(Logger.class);
+    log.debug(eq(REJECTING_FORMAT), keyEq(s.key()));
+    log.debug(eq(REJECTING_FORMAT), keyEq(s.key()));
+    _mocks.replay();
+    MpscMailbox m = new MpscMailbox(false);
+    SFuture<Object, Throwable> f = m.add(null, s);
+    SFuture<Object, Throwable> g = m.add(null, s);
+    m.kill(log);
+    assertTrue(f.isCancelled());
+    assertTrue(g.isCancelled());
+  }
+
+  @Test
+  public void stateAfterKill() {
+    _mocks.replay();
+    MpscMailbox m = new MpscMailbox(false);
+    m.kill(null);
+    catchThrowableOfType(() -> m.add(null, null), DeadActorException.class);
+    catchThrowableOfType(() -> m.load(_log, null, null, 1), DeadActorException.class);
+    assertEquals(DEAD_ACTOR_MESSAGE, catchThrowableOfType(m::size, IllegalStateException.class).getMessage());
+    catchThrowableOfType(m::unload, IllegalStateException.class);
+    DwellInfo dwellInfo = m.getDwellInfo();
+    assertEquals(0, dwellInfo.mailboxSize());
+    assertEquals(0, dwellInfo.dwellNanos(System.nanoTime()));
+  }
+
+  @ThreadCollectionType(CustomThreadPoolThreadCollection.class)
+  @LockFreeMailbox
+  public static class Aggregator implements ActorTarget<Aggregator.AggregatorActor> {
+    public interface AggregatorActor extends Actor {
+      SFuture<Void, VoidCheckedException> record(int producer, int seq);
+
+      SFuture<Integer, VoidCheckedException> total();
+    }
+
+    private int[] _nextSeqs;
+    private int _total;
+
+    private Aggregator(int producers) {
+      _nextSeqs = new int[producers];
+    }
+
+    public void init(AggregatorActor actor) {
+      // Do nothing.
+    }
+
+    public void record(int producer, int seq) {
+      if (_nextSeqs[producer]++ != seq) throw new AssertionError("Out of order.");
+      ++_total;
+    }
+
+    public Integer total() {
+      return _total;
+    }
+  }
+
+  @Test
+  public void manyProducers() throws Throwable {
+    int producers = 8, posts = 10000;
+    CustomThreadPoolThreadCollection pool = new CustomThreadPoolThreadCollection(10000, 0);
+    try {
+      ComponentSource componentSource = also(_mocks.createMock(ComponentSource.class), it -> expect(it.getComponent(CustomThreadPoolThreadCollection.class)).andReturn(pool));
+      _mocks.replay();
+      Aggregator.AggregatorActor actor = new StrangeImpl(componentSource, LoggerFactory.getILoggerFactory(), new AllActorsImpl()).spawn(new Aggregator(producers)).sync();
+      CountDownLatch start = new CountDownLatch(1);
+      List<Thread> threads = new ArrayList<>();
+      List<SFuture<Void, VoidCheckedException>> lastFutures = new ArrayList<>();
+      repeat(producers, p -> {
+        lastFutures.add(null);
+        threads.add(also(new Thread(() -> {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+          }
+          SFuture<Void, VoidCheckedException> f = null;
+          for (int seq = 0; seq < posts; ++seq)
+            f = actor.record(p, seq);
+          synchronized (lastFutures) {
+            lastFutures.set(p, f);
+          }
+        }), Thread::start));
+      });
+      start.countDown();
+      for (Thread thread : threads)
+        thread.join();
+      synchronized (lastFutures) {
+        for (SFuture<Void, VoidCheckedException> f : lastFutures)
+          f.sync(); // Would throw the AssertionError if a producer's posts were reordered.
+      }
+      assertEquals(producers * posts, (int) actor.total().sync());
+      assertEquals(0, actor.mailboxSize());
+    } finally {
+      pool.dispose();
+    }
+  }
+
+  @LockFreeMailbox
+  public static class Conflating implements ActorTarget<Conflating.ConflatingActor> {
+    public interface ConflatingActor extends Actor {
+      @Conflate
+      SFuture<Void, VoidCheckedException> latest(String value);
+    }
+
+    public void init(ConflatingActor actor) {
+      // Do nothing.
+    }
+
+    public void latest(String value) {
+      // Do nothing.
+    }
+  }
+
+  @LockFreeMailbox
+  public static class Reordering implements ActorTarget<Reordering.ReorderingActor> {
+    public interface ReorderingActor extends Actor {
+      @Batch(reorder = true)
+      SFuture<Void, VoidCheckedException> gathered(String part);
+    }
+
+    public void init(ReorderingActor actor) {
+      // Do nothing.
+    }
+
+    public void gathered(String[] parts) {
+      // Do nothing.
+    }
+  }
+
+  @Test
+  public void unsupportedAnnotationsAreRejected() {
+    _mocks.replay();
+    assertTrue(catchThrowable(() -> new TargetClass<>(Conflating.class)).getMessage().startsWith("Conflate is not supported"));
+    assertTrue(catchThrowable(() -> new TargetClass<>(Reordering.class)).getMessage().startsWith("Batch reorder is not supported"));
+  }
+
+  public void init(TestMpscMailboxActor actor) {
+    // Do nothing.
+  }
+}
@@ -0,0 +1,196 @@
+package com.github.strangefac.strange.impl;
+
+import static com.github.strangefac.strange.impl.Invocation.ONE_WAY_FAILURE_FORMAT;
+import static com.github.strangefac.strange.impl.Invocation.PRIVATE_POST_TASK_SIGNATURE_KEY;
+import static com.github.strangefac.strange.impl.Invocation.STACK_TRACE_NOT_LOGGED_HERE_FORMAT;
+import static com.github.strangefac.strange.impl.TestSFutureImpl.keyEq;
+import static com.github.strangefac.strange.util.Standard.also;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.same;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.slf4j.ILoggerFactory;
+import org.slf4j.Logger;
+import com.github.strangefac.strange.Actor;
+import com.github.strangefac.strange.ActorTarget;
+import com.github.strangefac.strange.AllActors;
+import com.github.strangefac.strange.DeadActorException;
+import com.github.strangefac.strange.OneWay;
+import com.github.strangefac.strange.SFuture;
+import com.github.strangefac.strange.Suspendable;
+import com.github.strangefac.strange.Suspension;
+import com.github.strangefac.strange.ThreadCollectionType;
+import com.github.strangefac.strange.function.VoidCheckedException;
+import com.github.strangefac.strange.util.ComponentSource;
+import com.github.strangefac.strange.util.EasyMockRule;
+
+public class TestOneWay {
+  public interface MyActor extends Actor {
+    @OneWay
+    void append(String s);
+
+    @OneWay
+    void fail(RuntimeException e);
+
+    @OneWay
+    void failWhenDoneImmediately(RuntimeException e);
+
+    @OneWay
+    void failWhenDone(RuntimeException e);
+
+    SFuture<String, VoidCheckedException> text();
+  }
+
+  public interface BadActor extends Actor {
+    @OneWay
+    SFuture<Void, VoidCheckedException> notVoid();
+  }
+
+  @ThreadCollectionType(ManualThreadCollection.class)
+  public static class MyTarget implements ActorTarget<MyActor> {
+    private final StringBuilder _text = new StringBuilder();
+
+    public void init(MyActor actor) {
+      // Do nothing.
+    }
+
+    public void append(String s) {
+      _text.append(s);
+    }
+
+    public void fail(RuntimeException e) {
+      throw e;
+    }
+
+    public void failWhenDoneImmediately(RuntimeException e) throws Suspension {
+      throw new Suspension(new BasicJoinImpl<Suspendable>()) {
+        private static final long serialVersionUID = 1L;
+
+        public Object done(Suspendable done) {
+          throw new AssertionError();
+        }
+
+        public Object doneImmediately() {
+          throw e;
+        }
+      };
+    }
+
+    public void failWhenDone(RuntimeException e) throws Suspension {
+      throw new Suspension(new BasicJoinImpl<>(also(new SFutureImpl<>(), f -> f.putValue(null)))) {
+        private static final long serialVersionUID = 1L;
+
+        public Object done(Suspendable done) {
+          throw e;
+        }
+
+        public Object doneImmediately() {
+          return atLeastOneSubtask();
+        }
+      };
+    }
+
+    public String text() {
+      return _text.toString();
+    }
+  }
+
+  @ThreadCollectionType(ManualThreadCollection.class)
+  public static class BadTarget implements ActorTarget<BadActor> {
+    public void init(BadActor actor) {
+      // Do nothing.
+    }
+
+    public void notVoid() {
+      // Do nothing.
+    }
+  }
+
+  @Rule
+  public final EasyMockRule _mocks = new EasyMockRule();
+  private final ManualThreadCollection _thread = new ManualThreadCollection();
+  private final ComponentSource _componentSource = also(_mocks.createMock(ComponentSource.class), it -> {
+    expect(it.getComponent(ManualThreadCollection.class)).andReturn(_thread).anyTimes();
+  });
+  private final Logger _log = _mocks.createMock(Logger.class);
+  private final ILoggerFactory _loggerFactory = also(_mocks.createMock(ILoggerFactory.class), it -> {
+    expect(it.getLogger(anyObject())).andReturn(_log).anyTimes();
+  });
+  private final AllActors _allActors = also(_mocks.createMock(AllActors.class), it -> {
+    it.purgeAndAdd(anyObject());
+    expectLastCall().anyTimes();
+  });
+
+  private void drain() throws InterruptedException {
+    _thread.postExitCommand();
+    _thread.enter();
+  }
+
+  @Test
+  public void works() throws Throwable {
+    _mocks.replay();
+    MyActor actor = new StrangeImpl(_componentSource, _loggerFactory, _allActors).spawn(new MyTarget()).actor();
+    actor.append("a");
+    actor.append("b");
+    assertEquals(3, actor.mailboxSize()); // Including init.
+    SFuture<String, VoidCheckedException> f = actor.text();
+    drain();
+    assertEquals("ab", f.sync());
+  }
+
+  @Test
+  public void failureIsLogged() throws Throwable {
+    RuntimeException e = new RuntimeException("kaboom");
+    List<Object> logged = new ArrayList<>();
+    _log.error(eq(ONE_WAY_FAILURE_FORMAT), keyEq(new SignatureInfo("fail", RuntimeException.class).key()), anyObject());
+    expectLastCall().andAnswer(() -> logged.add(getCurrentArguments()[2]));
+    _mocks.replay();
+    MyActor actor = new StrangeImpl(_componentSource, _loggerFactory, _allActors).spawn(new MyTarget()).actor();
+    actor.fail(e);
+    drain();
+    assertEquals(1, logged.size());
+    assertSame(e, logged.get(0));
+  }
+
+  @Test
+  public void failureOfDoneBlockIsLogged() throws Throwable {
+    RuntimeException e = new RuntimeException("kaboom"), f = new RuntimeException("bang");
+    List<Object> logged = new ArrayList<>();
+    for (String name : new String[] {"failWhenDoneImmediately", "failWhenDone"}) {
+      _log.error(eq(ONE_WAY_FAILURE_FORMAT), keyEq(new SignatureInfo(name, RuntimeException.class).key()), anyObject());
+      expectLastCall().andAnswer(() -> logged.add(getCurrentArguments()[2]));
+    }
+    _log.debug(eq(STACK_TRACE_NOT_LOGGED_HERE_FORMAT), keyEq(PRIVATE_POST_TASK_SIGNATURE_KEY), same(f)); // The done block ran as a posted task.
+    _mocks.replay();
+    MyActor actor = new StrangeImpl(_componentSource, _loggerFactory, _allActors).spawn(new MyTarget()).actor();
+    actor.failWhenDoneImmediately(e);
+    actor.failWhenDone(f);
+    drain();
+    assertEquals(Arrays.asList(e, f), logged);
+  }
+
+  @Test
+  public void wrapperIsNotCreated() throws DeadActorException {
+    _mocks.replay();
+    Mailbox m = new Mailbox(false);
+    assertNull(m.add(null, new SignatureInfo(false, false, false, false, null, null, false, true, "append", String.class), "a"));
+    assertEquals(1, m.size());
+  }
+
+  @Test
+  public void mustReturnVoid() {
+    _mocks.replay();
+    catchThrowableOfType(() -> new StrangeImpl(_componentSource, _loggerFactory, _allActors).spawn(new BadTarget()), IllegalArgumentException.class);
+  }
+}
@@ -7,6 +7,7 @@ import static com.github.strangefac.strange.pool.TestCustomThreadPoolThreadColle
 import static com.github.strangefac.strange.util.SlowTests.slowTestsEnabled;
 import static com.github.strangefac.strange.util.Standard.also;
 import static com.github.strangefac.strange.util.Standard.repeat;
+import static com.github.strangefac.strange.util.Standard.run;
 import static org.assertj.core.api.Assertions.catchThrowable;
 import static org.assertj.core.api.Assertions.catchThrowableOfType;
 import static org.easymock.EasyMock.anyObject;
@@ -17,14 +18,25 @@ import static org.easymock.EasyMock.reportMatcher;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import java.io.EOFException;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import org.easymock.IArgumentMatcher;
@@ -37,7 +49,11 @@ import com.github.strangefac.strange.Actor;
 import com.github.strangefac.strange.ActorTarget;
 import com.github.strangefac.strange.PrivateActor;
 import com.github.strangefac.strange.SFuture;
+import com.github.strangefac.strange.Suspendable;
 import com.github.strangefac.strange.SyncException;
+import com.github.strangefac.strange.Task;
+import com.github.strangefac.strange.Wrapper;
+import com.github.strangefac.strange.appl.TimerWheelDelay;
 import com.github.strangefac.strange.function.VoidCheckedException;
 import com.github.strangefac.strange.impl.Invocation;
 import com.github.strangefac.strange.impl.InvocationInfo;
@@ -118,7 +134,7 @@ public class TestSFutureImpl {
 
   private void createInvocation(SignatureInfo signatureInfo, Object... args) {
     InvocationInfo<Integer, Throwable> info = new InvocationInfo<>(_wrapper = new WrapperImpl<>(), _actor, signatureInfo, args);
-    _invocation = info.toInvocation(null, _log, new TargetClass<>(Target.class), new Target(), false);
+    _invocation = info.toInvocation(null, _log, new TargetClass<>(Target.class), new Target(), false, null);
     assertEquals(false, _wrapper.isDone());
     assertEquals(false, _wrapper.isCancelled());
     catchThrowableOfType(() -> _wrapper.get(0, TimeUnit.SECONDS), TimeoutException.class);
@@ -373,4 +389,223 @@ public class TestSFutureImpl {
     catchThrowableOfType(f::sync, CancellationException.class);
     t.join();
   }
+
+  /** Records the value of each task it is given, as {@link Suspendable#DONE_SUSPENDABLE} would post them. */
+  private static class RecordingActor implements PrivateActor {
+    private final Queue<Object> _values = new ConcurrentLinkedQueue<>();
+
+    public <V, E extends Throwable> void post(Task<? extends V, ? extends E> task, Wrapper<V, E> wrapper) {
+      try {
+        _values.add(task.run());
+      } catch (Throwable t) {
+        throw new AssertionError(t);
+      }
+    }
+  }
+
+  @Test
+  public void donePostsRunInOrder() {
+    _mocks.replay();
+    RecordingActor actor = new RecordingActor();
+    SFutureImpl<Void, VoidCheckedException> f = new SFutureImpl<>();
+    for (int i = 0; i < 3; ++i) {
+      int k = i;
+      f.postAfterDone(actor, () -> k, null);
+    }
+    assertEquals(0, actor._values.size());
+    f.putValue(null);
+    f.postAfterDone(actor, () -> 3, null); // Runs immediately.
+    assertEquals(Arrays.asList(0, 1, 2, 3), new ArrayList<>(actor._values));
+    catchThrowableOfType(() -> f.putValue(null), IllegalStateException.class);
+  }
+
+  @Test(timeout = 10000)
+  public void highFanOut() throws InterruptedException, ExecutionException {
+    _mocks.replay();
+    int threadCount = 8, postCount = 1000;
+    RecordingActor actor = new RecordingActor();
+    SFutureImpl<String, VoidCheckedException> f = new SFutureImpl<>();
+    CountDownLatch started = new CountDownLatch(threadCount);
+    List<Thread> threads = new ArrayList<>();
+    BlockingQueue<Object> results = new LinkedBlockingQueue<>();
+    repeat(threadCount, () -> threads.add(new Thread(() -> {
+      started.countDown();
+      for (int i = 0; i < postCount; ++i) {
+        int k = i;
+        f.postAfterDone(actor, () -> k, null);
+      }
+      try {
+        results.add(f.get()); // Waiters and posts share a stack.
+      } catch (Throwable t) {
+        results.add(t);
+      }
+    })));
+    threads.forEach(Thread::start);
+    started.await();
+    f.putValue("done");
+    for (Thread t : threads)
+      t.join();
+    repeat(threadCount, () -> assertEquals("done", results.take()));
+    assertEquals(threadCount * postCount, actor._values.size());
+    assertEquals("done", f.get());
+  }
+
+  @Test
+  public void toCompletableFutureWorks() throws Exception {
+    _mocks.replay();
+    SFutureImpl<String, IOException> f = new SFutureImpl<>();
+    CompletableFuture<String> before = f.toCompletableFuture();
+    assertFalse(before.isDone());
+    f.putValue("woo");
+    assertEquals("woo", before.getNow(null));
+    assertEquals("woo", f.toCompletableFuture().getNow(null)); // Already done.
+    EOFException throwable = new EOFException();
+    also(new SFutureImpl<Void, IOException>(), g -> {
+      g.putCauseOfInvocationTargetException(throwable);
+      assertSame(throwable, catchThrowableOfType(g.toCompletableFuture()::get, ExecutionException.class).getCause()); // Unwrapped.
+    });
+    also(new SFutureImpl<Void, IOException>(), g -> {
+      CompletableFuture<Void> c = g.toCompletableFuture();
+      c.cancel(false);
+      assertFalse(g.isDone()); // No effect.
+      g.putCancelled();
+      assertTrue(g.toCompletableFuture().isCancelled());
+    });
+  }
+
+  @Test
+  public void foreignToCompletableFutureWorks() throws Exception {
+    _mocks.replay();
+    ForeignSFuture<String, IOException> f = new ForeignSFuture<>();
+    CompletableFuture<String> before = f.toCompletableFuture();
+    f.putValue("woo");
+    assertEquals("woo", before.get(10, TimeUnit.SECONDS));
+    assertEquals("woo", f.toCompletableFuture().getNow(null)); // Already done.
+    EOFException throwable = new EOFException();
+    also(new ForeignSFuture<Void, IOException>(), g -> {
+      g.putCauseOfInvocationTargetException(throwable);
+      assertSame(throwable, catchThrowableOfType(g.toCompletableFuture()::get, ExecutionException.class).getCause()); // Unwrapped.
+    });
+  }
+
+  @Test
+  public void fromCompletionStageWorks() throws Exception {
+    _mocks.replay();
+    CompletableFuture<String> c = new CompletableFuture<>();
+    SFutureImpl<String, IOException> f = SFutureImpl.fromCompletionStage(c);
+    assertFalse(f.isDone());
+    c.complete("woo");
+    assertEquals("woo", f.sync());
+    EOFException throwable = new EOFException();
+    assertSame(throwable, catchThrowable(SFutureImpl.<Void, IOException> fromCompletionStage(run(() -> {
+      CompletableFuture<Void> d = new CompletableFuture<>();
+      d.completeExceptionally(throwable);
+      return d;
+    }))::sync));
+    assertSame(throwable, catchThrowable(SFutureImpl.<Object, IOException> fromCompletionStage(CompletableFuture.supplyAsync(() -> {
+      throw new CompletionException(throwable); // Unwrapped.
+    }))::sync));
+    also(new CompletableFuture<Void>(), d -> {
+      SFutureImpl<Void, VoidCheckedException> g = SFutureImpl.fromCompletionStage(d);
+      d.cancel(false);
+      assertTrue(g.isCancelled());
+    });
+  }
+
+  @Test
+  public void mapWorks() throws Exception {
+    _mocks.replay();
+    SFutureImpl<String, IOException> f = new SFutureImpl<>();
+    SFuture<Integer, IOException> g = f.map(String::length);
+    assertFalse(g.isDone());
+    f.putValue("woo");
+    assertEquals(Integer.valueOf(3), g.assertDoneAndGetUninterruptibly());
+    assertEquals(null, f.map(s -> null).assertDoneAndGetUninterruptibly());
+    NullPointerException npe = new NullPointerException();
+    assertSame(npe, catchThrowable(f.map(s -> {
+      throw npe;
+    })::sync));
+    EOFException throwable = new EOFException();
+    also(new SFutureImpl<String, IOException>(), h -> {
+      h.putCauseOfInvocationTargetException(throwable);
+      assertSame(throwable, catchThrowable(h.map(String::length)::sync)); // Propagated.
+    });
+    also(new SFutureImpl<String, IOException>(), h -> {
+      h.putCancelled();
+      assertTrue(h.map(String::length).isCancelled());
+    });
+  }
+
+  @Test
+  public void flatMapWorks() throws Exception {
+    _mocks.replay();
+    SFutureImpl<String, IOException> f = new SFutureImpl<>(), inner = new SFutureImpl<>();
+    SFuture<Integer, IOException> g = f.flatMap(s -> inner.map(t -> s.length() + t.length()));
+    f.putValue("woo");
+    assertFalse(g.isDone());
+    inner.putValue("ya");
+    assertEquals(Integer.valueOf(5), g.assertDoneAndGetUninterruptibly());
+    EOFException throwable = new EOFException();
+    SFutureImpl<String, IOException> failed = new SFutureImpl<>();
+    failed.putCauseOfInvocationTargetException(throwable);
+    assertSame(throwable, catchThrowable(f.flatMap(s -> failed)::sync));
+    catchThrowableOfType(f.flatMap(s -> null)::sync, IllegalArgumentException.class);
+  }
+
+  @Test
+  public void foreignMapAndFlatMapWork() throws Exception {
+    _mocks.replay();
+    ForeignSFuture<String, IOException> f = new ForeignSFuture<>();
+    SFuture<Integer, IOException> g = f.map(String::length), h = f.flatMap(s -> f.map(t -> s.length() + t.length()));
+    f.putValue("woo");
+    assertEquals(Integer.valueOf(3), g.sync(10));
+    assertEquals(Integer.valueOf(6), h.sync(10));
+    EOFException throwable = new EOFException();
+    also(new ForeignSFuture<String, IOException>(), failed -> {
+      failed.putCauseOfInvocationTargetException(throwable);
+      assertSame(throwable, catchThrowable(() -> failed.map(String::length).sync(10))); // Propagated.
+    });
+  }
+
+  @Test
+  public void pollingDoesNotGrowTheStack() throws Exception {
+    _mocks.replay();
+    SFutureImpl<String, VoidCheckedException> f = new SFutureImpl<>();
+    String[] got = {null};
+    Thread waiter = new Thread(() -> got[0] = f.sync());
+    waiter.start();
+    while (0 == f.stackSize())
+      Thread.sleep(1);
+    f.andForget(null); // A post under the polled nodes, which must survive.
+    for (int i = 0; i < 10000; ++i)
+      catchThrowableOfType(() -> f.get(1, TimeUnit.MICROSECONDS), TimeoutException.class);
+    assertEquals(2, f.stackSize());
+    f.putValue("woo");
+    waiter.join();
+    assertEquals("woo", got[0]);
+    assertEquals(0, f.stackSize());
+  }
+
+  @Test
+  public void orTimeoutWorks() throws Exception {
+    _mocks.replay();
+    TimerWheelDelay delay = new TimerWheelDelay(10, 64);
+    try {
+      SFutureImpl<String, VoidCheckedException> f = new SFutureImpl<>(), g = new SFutureImpl<>();
+      SFuture<String, VoidCheckedException> met = f.orTimeout(delay, 10), missed = g.orTimeout(delay, .05);
+      f.putValue("woo");
+      assertEquals("woo", met.assertDoneAndGetUninterruptibly());
+      assertTrue(catchThrowableOfType(missed::sync, SyncException.class).getCause() instanceof TimeoutException);
+      g.putValue("too late");
+      assertTrue(catchThrowableOfType(missed::get, ExecutionException.class).getCause() instanceof TimeoutException);
+      ForeignSFuture<String, VoidCheckedException> h = new ForeignSFuture<>(), i = new ForeignSFuture<>();
+      SFuture<String, VoidCheckedException> foreignMet = h.orTimeout(delay, 10), foreignMissed = i.orTimeout(delay, .05);
+      h.putValue("woo");
+      assertEquals("woo", foreignMet.sync(10));
+      assertTrue(catchThrowableOfType(foreignMissed::sync, SyncException.class).getCause() instanceof TimeoutException);
+      i.putValue("too late");
+    } finally {
+      delay.dispose();
+    }
+  }
 }
@@ -0,0 +1,58 @@
+package com.github.strangefac.strange.impl;
+
+import static com.github.strangefac.strange.util.SlowTests.slowTestsEnabled;
+import static com.github.strangefac.strange.util.Standard.also;
+import static org.junit.Assert.assertArrayEquals;
+import java.lang.reflect.Array;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+public class TestSignatureInfo {
+  /** The old way, for comparison. */
+  private static Object[] reflectiveBatchArgs(Class<?>[] parameterTypes, Object[][] batchArgs) {
+    Object[] args = new Object[parameterTypes.length];
+    for (int argIndex = 0; argIndex < args.length; ++argIndex) {
+      args[argIndex] = Array.newInstance(parameterTypes[argIndex], batchArgs.length);
+      for (int batchIndex = 0; batchIndex < batchArgs.length; ++batchIndex)
+        Array.set(args[argIndex], batchIndex, batchArgs[batchIndex][argIndex]);
+    }
+    return args;
+  }
+
+  @Rule
+  public final TestName _testName = new TestName();
+
+  /** Not really a test unless slow tests are enabled, but compares batches of a thousand record(long, double) calls. */
+  @Test
+  public void batchArgsThroughput() {
+    Class<?>[] parameterTypes = {long.class, double.class};
+    SignatureInfo signatureInfo = new SignatureInfo(true, false, false, false, null, null, false, "record", parameterTypes);
+    int batchSize = 1000, n = 2000;
+    Object[][] batchArgs = new Object[batchSize][];
+    for (int i = 0; i < batchSize; ++i)
+      batchArgs[i] = new Object[] {(long) i, i / 2.0};
+    Object[] expected = {also(new long[batchSize], it -> {
+      for (int i = 0; i < batchSize; ++i)
+        it[i] = i;
+    }), also(new double[batchSize], it -> {
+      for (int i = 0; i < batchSize; ++i)
+        it[i] = i / 2.0;
+    })};
+    assertArrayEquals(expected, signatureInfo.batchArgs(batchArgs));
+    assertArrayEquals(expected, reflectiveBatchArgs(parameterTypes, batchArgs));
+    if (!slowTestsEnabled(_testName)) return;
+    long[] nanos = new long[2];
+    for (int round = 0; round < 2; ++round) { // The first is warm-up.
+      long startNanos = System.nanoTime();
+      for (int i = 0; i < n; ++i)
+        reflectiveBatchArgs(parameterTypes, batchArgs);
+      nanos[0] = System.nanoTime() - startNanos;
+      startNanos = System.nanoTime();
+      for (int i = 0; i < n; ++i)
+        signatureInfo.batchArgs(batchArgs);
+      nanos[1] = System.nanoTime() - startNanos;
+    }
+    System.err.println(String.format("Batch args per element: reflective %.1f ns, assembler %.1f ns", nanos[0] / (double) n / batchSize, nanos[1] / (double) n / batchSize));
+  }
+}
@@ -0,0 +1,98 @@
+package com.github.strangefac.strange.impl;
+
+import static com.github.strangefac.strange.util.Standard.also;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.junit.Assert.assertEquals;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import com.github.strangefac.strange.Actor;
+import com.github.strangefac.strange.ActorTarget;
+import com.github.strangefac.strange.AllActors;
+import com.github.strangefac.strange.OneWay;
+import com.github.strangefac.strange.Slow;
+import com.github.strangefac.strange.SlowThreadCollectionType;
+import com.github.strangefac.strange.ThreadCollectionType;
+import com.github.strangefac.strange.util.ComponentSource;
+import com.github.strangefac.strange.util.EasyMockRule;
+
+public class TestSlowThreadCollection {
+  public interface MyActor extends Actor {
+    @OneWay
+    void fast(String label);
+
+    @OneWay
+    @Slow
+    void slow(String label);
+  }
+
+  public static class SlowManualThreadCollection extends ManualThreadCollection {
+    // Nothing else.
+  }
+
+  @ThreadCollectionType(ManualThreadCollection.class)
+  @SlowThreadCollectionType(SlowManualThreadCollection.class)
+  public static class MyTarget implements ActorTarget<MyActor> {
+    private final List<String> _log = new ArrayList<>();
+
+    public void init(MyActor actor) {
+      // Do nothing.
+    }
+
+    public void fast(String label) {
+      _log.add(label);
+    }
+
+    public void slow(String label) {
+      _log.add(label);
+    }
+  }
+
+  @Rule
+  public final EasyMockRule _mocks = new EasyMockRule();
+  private final ManualThreadCollection _fastThread = new ManualThreadCollection();
+  private final SlowManualThreadCollection _slowThread = new SlowManualThreadCollection();
+  private final ComponentSource _componentSource = also(_mocks.createMock(ComponentSource.class), it -> {
+    expect(it.getComponent(ManualThreadCollection.class)).andReturn(_fastThread);
+    expect(it.getComponent(SlowManualThreadCollection.class)).andReturn(_slowThread);
+  });
+  private final AllActors _allActors = also(_mocks.createMock(AllActors.class), it -> {
+    it.purgeAndAdd(anyObject());
+    expectLastCall().anyTimes();
+  });
+
+  private static int drain(ManualThreadCollection thread) throws InterruptedException {
+    thread.postExitCommand();
+    return thread.enter();
+  }
+
+  @Test
+  public void slowInvocationsRunOnTheSlowThreadCollection() throws InterruptedException {
+    _mocks.replay();
+    MyTarget target = new MyTarget();
+    MyActor actor = new StrangeImpl(_componentSource, LoggerFactory.getILoggerFactory(), _allActors).spawn(target).actor();
+    actor.fast("f1");
+    actor.slow("s1");
+    actor.slow("s2");
+    actor.fast("f2");
+    assertEquals(1, drain(_slowThread)); // Nothing for it yet.
+    assertEquals(2, drain(_fastThread)); // Runs init and f1, then hands over to the slow thread collection.
+    assertEquals(Arrays.asList("f1"), target._log);
+    assertEquals(2, drain(_slowThread));
+    assertEquals(Arrays.asList("f1", "s1", "s2"), target._log);
+    assertEquals(2, drain(_fastThread));
+    assertEquals(Arrays.asList("f1", "s1", "s2", "f2"), target._log);
+    assertEquals(0, actor.mailboxSize());
+    // Scheduling resumes on whichever thread collection was last used:
+    actor.slow("s3");
+    assertEquals(1, drain(_slowThread));
+    assertEquals(2, drain(_fastThread));
+    assertEquals(2, drain(_slowThread));
+    assertEquals(Arrays.asList("f1", "s1", "s2", "f2", "s3"), target._log);
+  }
+}
@@ -1,21 +1,35 @@
 package com.github.strangefac.strange.impl;
 
+import static com.github.strangefac.strange.impl.Invocation.STACK_TRACE_NOT_LOGGED_HERE_FORMAT;
 import static com.github.strangefac.strange.util.Standard.also;
+import static com.github.strangefac.strange.util.SlowTests.slowTestsEnabled;
 import static com.github.strangefac.strange.util.Standard.run;
 import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import org.junit.After;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TestName;
 import org.slf4j.Logger;
 import com.github.strangefac.strange.Actor;
 import com.github.strangefac.strange.ActorTarget;
 import com.github.strangefac.strange.AllActors;
+import com.github.strangefac.strange.SFuture;
 import com.github.strangefac.strange.Spawned;
 import com.github.strangefac.strange.ThreadCollectionType;
+import com.github.strangefac.strange.function.VoidCheckedException;
+import com.github.strangefac.strange.impl.SignatureInfo.SignatureKey;
 import com.github.strangefac.strange.impl.StrangeImpl;
+import com.github.strangefac.strange.impl.StrangeImpl.Invoker;
+import com.github.strangefac.strange.impl.StrangeImpl.TargetClass;
 import com.github.strangefac.strange.pool.CustomThreadPoolThreadCollection;
 import com.github.strangefac.strange.pool.ThreadPoolThreadCollection;
 import com.github.strangefac.strange.util.ComponentSource;
@@ -113,4 +127,90 @@ public class TestStrangeImpl {
   private static Actor actor(Spawned<?, ?> spawned) {
     return spawned.actor();
   }
+
+  public interface InvokerActor extends Actor {
+    SFuture<Integer, VoidCheckedException> add(int x, long y);
+
+    SFuture<Void, IOException> fail(String message);
+
+    SFuture<Void, VoidCheckedException> oops();
+  }
+
+  @ThreadCollectionType(ThreadPoolThreadCollection.class)
+  public static class InvokerTarget implements ActorTarget<InvokerActor> {
+    public void init(InvokerActor actor) {
+      // Do nothing.
+    }
+
+    public int add(int x, long y) {
+      return x + (int) y;
+    }
+
+    public void fail(String message) throws IOException {
+      throw new IOException(message);
+    }
+
+    public void oops() {
+      throw new StackOverflowError();
+    }
+  }
+
+  @Test
+  public void invokerBehavesLikeReflection() throws Throwable {
+    _log.debug(eq(STACK_TRACE_NOT_LOGGED_HERE_FORMAT), anyObject(), anyObject());
+    expectLastCall().times(2);
+    _mocks.replay();
+    InvokerActor actor = _strange.spawn(new InvokerTarget()).sync();
+    assertEquals(5, (int) actor.add(2, 3L).sync());
+    assertEquals("x", catchThrowableOfType(actor.fail("x")::sync, IOException.class).getMessage());
+    catchThrowableOfType(actor.oops()::sync, StackOverflowError.class);
+    TargetClass<InvokerActor> targetClass = new TargetClass<>(InvokerTarget.class);
+    InvokerTarget target = new InvokerTarget();
+    assertEquals(5, targetClass.resolve(new SignatureKey("add", int.class, long.class)).invoke(target, new Object[]{2, 3L}));
+    assertEquals(null, targetClass.resolve(new SignatureKey("init", Actor.class)).invoke(target, new Object[]{null}));
+    assertEquals("x", catchThrowableOfType(() -> targetClass.resolve(new SignatureKey("fail", String.class)).invoke(target, new Object[]{"x"}), InvocationTargetException.class).getCause().getMessage());
+    assertTrue(catchThrowableOfType(() -> targetClass.resolve(new SignatureKey("oops")).invoke(target, new Object[0]), InvocationTargetException.class).getCause() instanceof StackOverflowError);
+    catchThrowableOfType(() -> targetClass.resolve(new SignatureKey("oops")).invoke(null, new Object[0]), NullPointerException.class);
+    // Bad args are the caller's fault, as with reflection:
+    Invoker add = targetClass.resolve(new SignatureKey("add", int.class, long.class));
+    assertEquals(7, add.invoke(target, new Object[]{(short) 3, 4})); // Widened.
+    catchThrowableOfType(() -> add.invoke(target, new Object[]{2}), IllegalArgumentException.class);
+    catchThrowableOfType(() -> add.invoke(target, null), IllegalArgumentException.class);
+    catchThrowableOfType(() -> add.invoke(target, new Object[]{null, 3L}), IllegalArgumentException.class);
+    catchThrowableOfType(() -> add.invoke(target, new Object[]{2L, 3L}), IllegalArgumentException.class);
+    catchThrowableOfType(() -> add.invoke(target, new Object[]{"2", 3L}), IllegalArgumentException.class);
+    catchThrowableOfType(() -> add.invoke(new Object(), new Object[]{2, 3L}), IllegalArgumentException.class);
+    catchThrowableOfType(() -> targetClass.resolve(new SignatureKey("fail", String.class)).invoke(target, new Object[]{1}), IllegalArgumentException.class);
+  }
+
+  @Rule
+  public final TestName _testName = new TestName();
+
+  /** Not really a test, but compares the invoker with {@link Method#invoke(Object, Object...)}, neither of which is a constant the JIT can inline through. */
+  @Test
+  public void invokerThroughput() throws Throwable {
+    _mocks.replay();
+    InvokerActor actor = _strange.spawn(new InvokerTarget()).sync(); // Satisfy the mocks.
+    assertEquals(5, (int) actor.add(2, 3L).sync());
+    if (!slowTestsEnabled(_testName)) return;
+    Method method = InvokerTarget.class.getMethod("add", int.class, long.class);
+    Invoker invoker = new TargetClass<>(InvokerTarget.class).resolve(new SignatureKey("add", int.class, long.class));
+    InvokerTarget target = new InvokerTarget();
+    Object[] args = {2, 3L};
+    int n = 10000000;
+    long[] nanos = new long[2];
+    long sum = 0;
+    for (int round = 0; round < 2; ++round) { // The first is warm-up.
+      long startNanos = System.nanoTime();
+      for (int i = 0; i < n; ++i)
+        sum += (Integer) method.invoke(target, args);
+      nanos[0] = System.nanoTime() - startNanos;
+      startNanos = System.nanoTime();
+      for (int i = 0; i < n; ++i)
+        sum += (Integer) invoker.invoke(target, args);
+      nanos[1] = System.nanoTime() - startNanos;
+    }
+    assertEquals(4L * n * 5, sum);
+    System.err.println(String.format("Invoke add(int, long): reflective %.1f ns, invoker %.1f ns", nanos[0] / (double) n, nanos[1] / (double) n));
+  }
 }
@@ -6,6 +6,7 @@ import static com.github.strangefac.strange.util.Standard.also;
 import static com.github.strangefac.strange.util.Standard.repeat;
 import static org.assertj.core.api.Assertions.catchThrowableOfType;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -81,6 +82,45 @@ public class TestCustomThreadPoolThreadCollection {
     });
   }
 
+  @Test
+  public void mostRecentlyClearThreadIsReused() throws InterruptedException {
+    _pool = new CustomThreadPoolThreadCollection(10000, 0);
+    int n = 3;
+    ArrayList<CountDownLatch> releases = new ArrayList<>();
+    Thread[] started = new Thread[n];
+    CountDownLatch allStarted = new CountDownLatch(n);
+    for (int i = 0; i < n; ++i) {
+      int k = i;
+      CountDownLatch release = new CountDownLatch(1);
+      releases.add(release);
+      _pool.execute(() -> {
+        started[k] = Thread.currentThread();
+        allStarted.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+    }
+    allStarted.await();
+    LinkedBlockingQueue<Thread> threads = new LinkedBlockingQueue<>();
+    Metrics metrics = _pool.takeMetrics();
+    assertEquals(n, metrics.size());
+    assertEquals(n, metrics.activeCount());
+    for (int i = n - 1; i >= 0; --i) { // Release in reverse order of start, so the first thread is the most recently clear.
+      releases.get(i).countDown();
+      Thread.sleep(DELAY / 2);
+      assertEquals(i, _pool.takeMetrics().activeCount()); // No sampling.
+    }
+    _pool.execute(() -> threads.add(Thread.currentThread()));
+    assertSame(started[0], threads.take());
+    Thread.sleep(DELAY / 2); // Let it become clear again.
+    _pool.execute(() -> threads.add(Thread.currentThread()));
+    assertSame(started[0], threads.take()); // It went back on top.
+    assertEquals(n, _pool.takeMetrics().size());
+  }
+
   /**
    * Ensures that {@link CustomThreadPoolThreadCollection#promote(PoolThread)} actually helps redundant threads to time-out.
    * <p>
@@ -0,0 +1,100 @@
+package com.github.strangefac.strange.pool;
+
+import static com.github.strangefac.strange.pool.CustomThreadPoolThreadCollection.NOT_ACCEPTING_NEW_MESSAGE;
+import static com.github.strangefac.strange.util.Standard.also;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import com.github.strangefac.strange.Actor;
+import com.github.strangefac.strange.ActorTarget;
+import com.github.strangefac.strange.AllActors;
+import com.github.strangefac.strange.SFuture;
+import com.github.strangefac.strange.ThreadCollectionType;
+import com.github.strangefac.strange.function.VoidCheckedException;
+import com.github.strangefac.strange.impl.StrangeImpl;
+import com.github.strangefac.strange.util.ComponentSource;
+import com.github.strangefac.strange.util.EasyMockRule;
+
+public class TestForkJoinThreadPoolThreadCollection {
+  public interface PingActor extends Actor {
+    SFuture<Integer, VoidCheckedException> ping(int n);
+  }
+
+  @ThreadCollectionType(ForkJoinThreadPoolThreadCollection.class)
+  public static class Ping implements ActorTarget<PingActor> {
+    public void init(PingActor actor) {
+      // Do nothing.
+    }
+
+    public int ping(int n) {
+      return n + 1;
+    }
+  }
+
+  @Rule
+  public final EasyMockRule _mocks = new EasyMockRule();
+  private final ForkJoinThreadPoolThreadCollection _pool = new ForkJoinThreadPoolThreadCollection(2);
+
+  @After
+  public void tearDown() throws InterruptedException {
+    try {
+      _pool.dispose();
+    } catch (IllegalStateException e) {
+      // Some of the tests stopped it themselves, so ignore.
+    }
+  }
+
+  @Test
+  public void executeFromWorkerWorks() throws InterruptedException {
+    ForkJoinThreadPoolThreadCollection pool = new ForkJoinThreadPoolThreadCollection(1);
+    try {
+      Thread[] threads = new Thread[2];
+      CountDownLatch done = new CountDownLatch(1);
+      pool.execute(() -> {
+        threads[0] = Thread.currentThread();
+        pool.execute(() -> {
+          threads[1] = Thread.currentThread();
+          done.countDown();
+        });
+      });
+      if (!done.await(10, TimeUnit.SECONDS)) fail("Task did not execute.");
+      assertSame(threads[0], threads[1]);
+      assertEquals(1, pool.takeMetrics().largestSize());
+    } finally {
+      pool.dispose();
+    }
+  }
+
+  @Test
+  public void actorsWork() throws Throwable {
+    ComponentSource componentSource = also(_mocks.createMock(ComponentSource.class), it -> expect(it.getComponent(ForkJoinThreadPoolThreadCollection.class)).andReturn(_pool));
+    AllActors allActors = also(_mocks.createMock(AllActors.class), it -> {
+      it.purgeAndAdd(anyObject());
+      expectLastCall().anyTimes();
+    });
+    _mocks.replay();
+    StrangeImpl strange = new StrangeImpl(componentSource, LoggerFactory.getILoggerFactory(), allActors);
+    PingActor a = strange.spawn(new Ping()).sync(), b = strange.spawn(new Ping()).sync();
+    assertEquals(Integer.valueOf(2), a.ping(1).sync());
+    assertEquals(Integer.valueOf(3), a.post(() -> b.ping(2)).sync().sync()); // The post to b is from a worker thread.
+  }
+
+  @Test
+  public void rejectsAfterDispose() throws InterruptedException {
+    _pool.dispose();
+    assertEquals(0, _pool.takeMetrics().size());
+    assertEquals(NOT_ACCEPTING_NEW_MESSAGE, catchThrowableOfType(() -> _pool.execute(() -> fail("Should not be executed.")), RejectedExecutionException.class).getMessage());
+    catchThrowableOfType(_pool::dispose, IllegalStateException.class);
+  }
+}
@@ -1,6 +1,7 @@
 package com.github.strangefac.strange.pool;
 
 import static com.github.strangefac.strange.pool.TaskHolder.EXIT_TASK;
+import static com.github.strangefac.strange.util.SlowTests.slowTestsEnabled;
 import static com.github.strangefac.strange.util.Standard.repeat;
 import static org.assertj.core.api.Assertions.catchThrowableOfType;
 import static org.junit.Assert.assertEquals;
@@ -9,9 +10,11 @@ import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.LockSupport;
 import org.junit.After;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TestName;
 import com.github.strangefac.strange.function.VoidCallable;
 import com.github.strangefac.strange.pool.TaskHolder;
 import com.github.strangefac.strange.util.EasyMockRule;
@@ -164,6 +167,54 @@ public class TestTaskHolder {
     putExit(false);
   }
 
+  @Test(timeout = BEFORE_TOO_LONG)
+  public void spuriousWakeupKeepsWaiting() throws Exception {
+    Runnable otherRunnable = _mocks.createMock(Runnable.class);
+    _mocks.replay();
+    assertTrue(_taskHolder.consume());
+    BlockingQueue<Runnable> q = new LinkedBlockingQueue<>();
+    Thread thread = new Thread(() -> q.add(_taskHolder.peekOrExit(TOO_LONG)));
+    thread.start();
+    Thread.sleep(100); // Ensure the thread is parked.
+    LockSupport.unpark(thread);
+    Thread.sleep(100);
+    assertEquals(0, q.size()); // Still waiting, rather than retiring itself.
+    assertTrue(_taskHolder.put(otherRunnable));
+    assertSame(otherRunnable, q.take());
+  }
+
+  @Rule
+  public final TestName _testName = new TestName();
+
+  /** Not really a test unless slow tests are enabled, but shows the cost of a hand-off to a thread that is busy, spinning or parked. */
+  @Test(timeout = TOO_LONG)
+  public void handOffThroughput() throws InterruptedException {
+    _mocks.replay();
+    boolean slow = slowTestsEnabled(_testName);
+    int n = slow ? 1000000 : 1000; // Otherwise just check that every task is handed off.
+    int[] count = {0};
+    Runnable task = () -> ++count[0];
+    assertTrue(_taskHolder.consume());
+    Thread thread = new Thread(() -> { // Like PoolThread.
+      Runnable t;
+      while (EXIT_TASK != (t = _taskHolder.peekOrExit(TOO_LONG))) {
+        t.run();
+        _taskHolder.consume();
+      }
+    });
+    thread.start();
+    long startNanos = System.nanoTime();
+    for (int i = 0; i < n; ++i) {
+      while (!_taskHolder.put(task))
+        Thread.yield();
+    }
+    _taskHolder.exit();
+    thread.join();
+    long nanos = System.nanoTime() - startNanos;
+    assertEquals(n, count[0]);
+    if (slow) System.err.println(String.format("Hand-off throughput: %.0f per second.", n * 1e9 / nanos));
+  }
+
   @Test
   public void consumeExit() {
     _mocks.replay();
@@ -0,0 +1,67 @@
+package com.github.strangefac.strange.pool;
+
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class TestVirtualThreadCollection {
+  /** @return Null if the JVM doesn't have virtual threads. */
+  private static Method isVirtualOrNull() {
+    try {
+      return Thread.class.getMethod("isVirtual");
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  @Test
+  public void virtualIffTheJvmHasVirtualThreads() throws Exception {
+    Method isVirtualOrNull = isVirtualOrNull();
+    VirtualThreadCollection threads = new VirtualThreadCollection(10000, 0);
+    try {
+      assertEquals(null != isVirtualOrNull, threads.virtual());
+      Object[] virtual = {null};
+      CountDownLatch done = new CountDownLatch(1);
+      threads.execute(() -> {
+        try {
+          virtual[0] = null == isVirtualOrNull ? false : isVirtualOrNull.invoke(Thread.currentThread());
+        } catch (ReflectiveOperationException e) {
+          virtual[0] = e;
+        }
+        done.countDown();
+      });
+      assertTrue(done.await(10, TimeUnit.SECONDS));
+      assertEquals(null != isVirtualOrNull, virtual[0]);
+    } finally {
+      threads.dispose();
+    }
+  }
+
+  @Test
+  public void blockingCommandsDoNotStarveEachOther() throws InterruptedException {
+    VirtualThreadCollection threads = new VirtualThreadCollection(10000, 0);
+    int n = 100;
+    CountDownLatch started = new CountDownLatch(n), finished = new CountDownLatch(n);
+    for (int i = 0; i < n; ++i) {
+      threads.execute(() -> {
+        started.countDown();
+        try {
+          started.await(); // Only completes if all commands are running at once.
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+        finished.countDown();
+      });
+    }
+    assertTrue(finished.await(10, TimeUnit.SECONDS));
+    threads.dispose();
+    catchThrowableOfType(() -> threads.execute(() -> fail("Should not be executed.")), RejectedExecutionException.class);
+    catchThrowableOfType(threads::dispose, IllegalStateException.class);
+  }
+}